@@ -33,6 +33,7 @@ import com.artemis.utils.Bag;
  * @author Arni Arent
  */
 public class Aspect {
+	World world;
 
 	/** Component bits the entity must all possess. */
 	BitVector allSet;
@@ -41,7 +42,8 @@ public class Aspect {
 	/** Component bits of which the entity must possess at least one. */
 	BitVector oneSet;
 
-	private Aspect() {
+	private Aspect(World world) {
+		this.world = world;
 		this.allSet = new BitVector();
 		this.exclusionSet = new BitVector();
 		this.oneSet = new BitVector();
@@ -79,10 +81,10 @@ public class Aspect {
 	}
 
 	/**
-	 * Returns whether this Aspect would accept the given Entity.
+	 * Returns whether this Aspect would accept the given entity.
 	 */
-	public boolean isInterested(Entity e){
-		return isInterested(e.getComponentBits());
+	public boolean isInterested(int entityID){
+		return isInterested(world.getComponentManager().componentBits(entityID));
 	}
 
 	/**
@@ -220,6 +222,8 @@ public class Aspect {
 		private final Bag<Class<? extends Component>> allTypes;
 		private final Bag<Class<? extends Component>> exclusionTypes;
 		private final Bag<Class<? extends Component>> oneTypes;
+		/** Number of repeated types dropped while building. */
+		private int duplicates;
 
 		private Builder() {
 			allTypes = new Bag<Class<? extends Component>>();
@@ -238,7 +242,7 @@ public class Aspect {
 		 */
 		public Builder all(Class<? extends Component>... types) {
 			for (Class<? extends Component> t : types) {
-				allTypes.add(t);
+				add(allTypes, t);
 			}
 			return this;
 		}
@@ -251,9 +255,17 @@ public class Aspect {
 			b.allTypes.addAll(allTypes);
 			b.exclusionTypes.addAll(exclusionTypes);
 			b.oneTypes.addAll(oneTypes);
+			b.duplicates = duplicates;
 			return b;
 		}
 
+		private void add(Bag<Class<? extends Component>> types, Class<? extends Component> type) {
+			if (types.contains(type))
+				duplicates++;
+			else
+				types.add(type);
+		}
+
 		/**
 		 * Returns an aspect where an entity must possess all of the specified
 		 * component types.
@@ -265,7 +277,7 @@ public class Aspect {
 		 */
 		public Builder all(Collection<Class<? extends Component>> types) {
 			for (Class<? extends Component> t : types) {
-				allTypes.add(t);
+				add(allTypes, t);
 			}
 
 			return this;
@@ -282,7 +294,7 @@ public class Aspect {
 		 */
 		public Builder one(Class<? extends Component>... types) {
 			for (Class<? extends Component> t : types)
-				oneTypes.add(t);
+				add(oneTypes, t);
 
 			return this;
 		}
@@ -298,7 +310,7 @@ public class Aspect {
 		 */
 		public Builder one(Collection<Class<? extends Component>> types) {
 			for (Class<? extends Component> t : types)
-				oneTypes.add(t);
+				add(oneTypes, t);
 
 			return this;
 		}
@@ -318,7 +330,7 @@ public class Aspect {
 		 */
 		public Builder exclude(Class<? extends Component>... types) {
 			for (Class<? extends Component> t : types)
-				exclusionTypes.add(t);
+				add(exclusionTypes, t);
 			return this;
 		}
 
@@ -337,7 +349,7 @@ public class Aspect {
 		 */
 		public Builder exclude(Collection<Class<? extends Component>> types) {
 			for (Class<? extends Component> t : types)
-				exclusionTypes.add(t);
+				add(exclusionTypes, t);
 
 			return this;
 		}
@@ -349,7 +361,7 @@ public class Aspect {
 		 */
 		public Aspect build(World world) {
 			ComponentTypeFactory tf = world.getComponentManager().typeFactory;
-			Aspect aspect = new Aspect();
+			Aspect aspect = new Aspect(world);
 			associate(tf, allTypes, aspect.allSet);
 			associate(tf, exclusionTypes, aspect.exclusionSet);
 			associate(tf, oneTypes, aspect.oneSet);
@@ -363,6 +375,10 @@ public class Aspect {
 			}
 		}
 
+		/**
+		 * Builders are equal when they match the same entities: the order
+		 * in which types were added, and any repeated types, don't matter.
+		 */
 		@Override
 		public boolean equals(Object o) {
 			if (this == o) return true;
@@ -370,11 +386,11 @@ public class Aspect {
 
 			Builder builder = (Builder) o;
 
-			if (!allTypes.equals(builder.allTypes))
+			if (!sameTypes(allTypes, builder.allTypes))
 				return false;
-			if (!exclusionTypes.equals(builder.exclusionTypes))
+			if (!sameTypes(exclusionTypes, builder.exclusionTypes))
 				return false;
-			if (!oneTypes.equals(builder.oneTypes))
+			if (!sameTypes(oneTypes, builder.oneTypes))
 				return false;
 
 			return true;
@@ -382,12 +398,43 @@ public class Aspect {
 
 		@Override
 		public int hashCode() {
-			int result = allTypes.hashCode();
-			result = 31 * result + exclusionTypes.hashCode();
-			result = 31 * result + oneTypes.hashCode();
+			int result = typesHash(allTypes);
+			result = 31 * result + typesHash(exclusionTypes);
+			result = 31 * result + typesHash(oneTypes);
 			return result;
 		}
 
+		/**
+		 * @return {@code true} if both builders declare the same types in the
+		 *         same order, with the same number of repeated types.
+		 */
+		boolean isDeclaredAs(Builder builder) {
+			return duplicates == builder.duplicates
+				&& allTypes.equals(builder.allTypes)
+				&& exclusionTypes.equals(builder.exclusionTypes)
+				&& oneTypes.equals(builder.oneTypes);
+		}
+
+		private static boolean sameTypes(Bag<Class<? extends Component>> a, Bag<Class<? extends Component>> b) {
+			if (a.size() != b.size())
+				return false;
+
+			for (int i = 0, s = a.size(); s > i; i++) {
+				if (!b.contains(a.get(i)))
+					return false;
+			}
+			return true;
+		}
+
+		/** Order independent hash of the types. */
+		private static int typesHash(Bag<Class<? extends Component>> types) {
+			int hash = 0;
+			for (int i = 0, s = types.size(); s > i; i++) {
+				hash += types.get(i).hashCode();
+			}
+			return hash;
+		}
+
 		@Override
 		public String toString() {
 			return "Aspect[" +
@@ -2,6 +2,7 @@ package com.artemis;
 
 import com.artemis.utils.BitVector;
 
+import com.artemis.annotations.ArrayStorage;
 import com.artemis.annotations.SkipWire;
 import com.artemis.utils.Bag;
 import com.artemis.utils.ImmutableBag;
@@ -10,6 +11,9 @@ import com.artemis.utils.ShortBag;
 import com.artemis.utils.reflect.ClassReflection;
 import com.artemis.utils.reflect.ReflectionException;
 
+import java.util.Arrays;
+
+
 /**
  * Handles the association between entities and their components.
  * <p>
@@ -25,17 +29,42 @@ public class ComponentManager extends BaseSystem {
 	static final int NO_COMPONENTS = 0;
 
 	/** Collects all Entites marked for deletion from this ComponentManager. */
-	private Bag<ComponentMapper> mappers = new Bag(ComponentMapper.class);
+	protected Bag<ComponentMapper> mappers = new Bag(ComponentMapper.class);
+	
+	protected final ComponentIdentityResolver identityResolver = new ComponentIdentityResolver();
 
-	private final ComponentIdentityResolver identityResolver = new ComponentIdentityResolver();
+	/** Composition id per entity; {@code null} when using wide identities. */
 	final ShortBag entityToIdentity;
+	/** Composition id per entity; {@code null} unless using wide identities. */
+	final IntBag entityToWideIdentity;
+
 	protected final ComponentTypeFactory typeFactory;
 
 	/**
-	 * Creates a new instance of {@link ComponentManager}.
+	 * Creates a new instance of {@link ComponentManager}, limited
+	 * to {@link Short#MAX_VALUE} unique compositions.
 	 */
 	protected ComponentManager(int entityContainerSize) {
-		entityToIdentity = new ShortBag(entityContainerSize);
+		this(entityContainerSize, false);
+	}
+
+	/**
+	 * Creates a new instance of {@link ComponentManager}.
+	 *
+	 * @param entityContainerSize initial capacity of entity stores.
+	 * @param wideIdentities {@code true} to track composition ids as <code>int</code>,
+	 *                       lifting the {@link Short#MAX_VALUE} composition limit at the
+	 *                       cost of twice the memory per entity.
+	 * @see WorldConfiguration#setWideCompositionIdentities(boolean)
+	 */
+	protected ComponentManager(int entityContainerSize, boolean wideIdentities) {
+		if (wideIdentities) {
+			entityToIdentity = null;
+			entityToWideIdentity = new IntBag(entityContainerSize);
+		} else {
+			entityToIdentity = new ShortBag(entityContainerSize);
+			entityToWideIdentity = null;
+		}
 		typeFactory = new ComponentTypeFactory(this, entityContainerSize);
 	}
 
@@ -51,19 +80,32 @@ public class ComponentManager extends BaseSystem {
 	protected <T extends Component> T create(int owner, Class<T> componentClass) {
 		return getMapper(componentClass).create(owner);
 	}
-
-	protected <T extends Component> ComponentMapper<T> getMapper(Class<T> mapper) {
-		ComponentType type = typeFactory.getTypeFor(mapper);
+	
+	protected <T extends Component> ComponentMapper<T> getMapper(Class<T> component) {
+		ComponentType type = typeFactory.getTypeFor(component);
 		return mappers.get(type.getIndex());
 	}
-
+	
 	void registerComponentType(ComponentType ct, int capacity) {
 		int index = ct.getIndex();
-		ComponentMapper mapper = new ComponentMapper(ct.getType(), world);
-		mapper.components.ensureCapacity(capacity);
+		ComponentMapper mapper;
+		if (ClassReflection.isAnnotationPresent(ct.getType(), ArrayStorage.class))
+			mapper = new ArrayComponentMapper(ct.getType(), world);
+		else
+			mapper = new ComponentMapper(ct.getType(), world);
+
+		mapper.ensureCapacity(capacity);
 		mappers.set(index, mapper);
 	}
 
+	/** Releases component storage held outside of the java heap. */
+	@Override
+	protected void dispose() {
+		for (ComponentMapper mapper : mappers) {
+			mapper.dispose();
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	static <T extends Component> T newInstance(Class<T> componentClass) {
 		try {
@@ -101,10 +143,19 @@ public class ComponentManager extends BaseSystem {
 	 *
 	 * @param type
 	 *			the type of components to get
-	 * @return a bag containing all components of the given type
+	 * @return a new bag, holding the component of each entity at its id
 	 */
+	@SuppressWarnings("unchecked")
 	protected Bag<Component> getComponentsByType(ComponentType type) {
-		return mappers.get(type.getIndex()).components;
+		ComponentStorage<Component> components = mappers.get(type.getIndex()).components;
+		Bag<Component> bag = new Bag<Component>(components.getCapacity());
+		for (int id = 0, s = components.getCapacity(); s > id; id++) {
+			Component component = components.get(id);
+			if (component != null)
+				bag.set(id, component);
+		}
+
+		return bag;
 	}
 
    /**
@@ -147,15 +198,34 @@ public class ComponentManager extends BaseSystem {
 		return fillBag;
 	}
 
+	/**
+	 * Evaluates the aspect against all known compositions.
+	 *
+	 * @param aspect aspect to match.
+	 * @param out cleared, then filled with the matching composition ids.
+	 * @return the {@code out} bitset.
+	 */
+	BitVector interest(Aspect aspect, BitVector out) {
+		Bag<BitVector> compositionBits = identityResolver.compositionBits;
+		out.clear();
+		out.ensureCapacity(compositionBits.size());
+		for (int i = 0, s = compositionBits.size(); s > i; i++) {
+			if (aspect.isInterested(compositionBits.get(i)))
+				out.unsafeSet(i);
+		}
+
+		return out;
+	}
+
 	/** Get component composition of entity. */
 	BitVector componentBits(int entityId) {
-		int identityIndex = entityToIdentity.get(entityId);
+		int identityIndex = getIdentity(entityId);
 		return identityResolver.compositionBits.get(identityIndex);
 	}
 
 	/** Get component composition of entity. */
-	private Bag<ComponentMapper> componentMappers(int entityId) {
-		int identityIndex = entityToIdentity.get(entityId);
+	public Bag<ComponentMapper> componentMappers(int entityId) {
+		int identityIndex = getIdentity(entityId);
 		return identityResolver.compositionMappers.get(identityIndex);
 	}
 
@@ -168,6 +238,11 @@ public class ComponentManager extends BaseSystem {
 	public int compositionIdentity(BitVector componentBits) {
 		int identity = identityResolver.getIdentity(componentBits);
 		if (identity == -1) {
+			if (entityToIdentity != null && identityResolver.compositionBits.size() > Short.MAX_VALUE) {
+				throw new IllegalStateException("Exceeded " + Short.MAX_VALUE + " unique compositions; " +
+					"see WorldConfiguration#setWideCompositionIdentities.");
+			}
+
 			identity = identityResolver.allocateIdentity(componentBits, this);
 			world.getAspectSubscriptionManager()
 				.processComponentIdentity(identity, componentBits);
@@ -186,7 +261,9 @@ public class ComponentManager extends BaseSystem {
 	 * @return composition identity.
 	 */
 	public int getIdentity(int entityId) {
-		return entityToIdentity.get(entityId);
+		return (entityToIdentity != null)
+			? entityToIdentity.get(entityId)
+			: entityToWideIdentity.unsafeGet(entityId);
 	}
 
 	/**
@@ -201,8 +278,8 @@ public class ComponentManager extends BaseSystem {
 			es.processComponentIdentity(i, componentBits);
 		}
 
-		for (Entity e : world.getEntityManager().entities) {
-			if (e != null) es.check(e.id, getIdentity(e.id));
+		for (int id=0; id < world.getEntityManager().getNextID(); id++) {
+			es.check(id, getIdentity(id));
 		}
 
 		es.informEntityChanges();
@@ -216,7 +293,32 @@ public class ComponentManager extends BaseSystem {
 	 * @param compositionId composition id
 	 */
 	void setIdentity(int entityId, int compositionId) {
-		entityToIdentity.unsafeSet(entityId, (short) compositionId);
+		if (entityToIdentity != null)
+			entityToIdentity.unsafeSet(entityId, (short) compositionId);
+		else
+			entityToWideIdentity.unsafeSet(entityId, compositionId);
+	}
+
+	/**
+	 * Set composition id of a contiguous range of entities.
+	 *
+	 * @param fromEntityId first entity id
+	 * @param toEntityId entity id after the last
+	 * @param compositionId composition id
+	 */
+	void setIdentities(int fromEntityId, int toEntityId, int compositionId) {
+		if (entityToIdentity != null)
+			Arrays.fill(entityToIdentity.getData(), fromEntityId, toEntityId, (short) compositionId);
+		else
+			Arrays.fill(entityToWideIdentity.getData(), fromEntityId, toEntityId, compositionId);
+	}
+
+	/**
+	 * @return {@code true} if composition ids are tracked as <code>int</code>.
+	 * @see WorldConfiguration#setWideCompositionIdentities(boolean)
+	 */
+	public boolean isWideIdentities() {
+		return entityToWideIdentity != null;
 	}
 
 	/**
@@ -228,9 +330,52 @@ public class ComponentManager extends BaseSystem {
 
 	public void ensureCapacity(int newSize) {
 		typeFactory.initialMapperCapacity = newSize;
-		entityToIdentity.ensureCapacity(newSize);
+		if (entityToIdentity != null)
+			entityToIdentity.ensureCapacity(newSize);
+		else
+			entityToWideIdentity.ensureCapacity(newSize);
+
+		for (ComponentMapper mapper : mappers) {
+			mapper.ensureCapacity(newSize);
+		}
+	}
+
+	/**
+	 * Moves components and composition ids of relocated entities.
+	 *
+	 * @param remap relocated entities.
+	 */
+	void relocate(EntityRemap remap) {
+		for (int i = 0, s = remap.size(); s > i; i++) {
+			int from = remap.getOldId(i);
+			int to = remap.getNewId(i);
+
+			Bag<ComponentMapper> mappers = componentMappers(from);
+			for (int j = 0, sj = mappers.size(); sj > j; j++) {
+				mappers.get(j).move(from, to);
+			}
+
+			setIdentity(to, getIdentity(from));
+			setIdentity(from, 0);
+		}
+	}
+
+	/**
+	 * Shrinks all entity stores to the given capacity. Entities at and
+	 * above {@code newSize} must no longer exist.
+	 *
+	 * @param newSize new capacity.
+	 * @see EntityManager#compact()
+	 */
+	public void trim(int newSize) {
+		typeFactory.initialMapperCapacity = newSize;
+		if (entityToIdentity != null)
+			entityToIdentity.trim(newSize);
+		else
+			entityToWideIdentity.trim(newSize);
+
 		for (ComponentMapper mapper : mappers) {
-			mapper.components.ensureCapacity(newSize);
+			mapper.trim(newSize);
 		}
 	}
 
@@ -239,23 +384,44 @@ public class ComponentManager extends BaseSystem {
 		final Bag<BitVector> compositionBits;
 		final Bag<Bag<ComponentMapper>> compositionMappers;
 
+		/** {@link BitVector#hashCode()} of each composition, indexed by identity. */
+		private final IntBag compositionHashes;
+
+		/** Open addressing table of identities, probed linearly; empty slots are {@code -1}. */
+		private int[] index;
+		private int mask;
+
 		ComponentIdentityResolver() {
 			compositionBits = new Bag(BitVector.class);
-			compositionBits.add(new BitVector());
 			compositionMappers = new Bag<Bag<ComponentMapper>>();
-			compositionMappers.add(new Bag(ComponentMapper.class));
+			compositionHashes = new IntBag();
+
+			index = new int[64];
+			mask = index.length - 1;
+			Arrays.fill(index, -1);
+
+			register(new BitVector(), new Bag(ComponentMapper.class));
 		}
 
-		/** Fetch unique identity for passed composition. */
+		/**
+		 * Fetch unique identity for passed composition.
+		 *
+		 * @return identity of composition, or {@code -1} if not yet registered.
+		 */
 		int getIdentity(BitVector components) {
+			int hash = components.hashCode();
 			Object[] bitsets = compositionBits.getData();
-			int size = compositionBits.size();
-			for (int i = NO_COMPONENTS; size > i; i++) { // want to start from 1 so that 0 can mean null
-				if (components.equals(bitsets[i]))
-					return i;
-			}
+			int[] hashes = compositionHashes.getData();
+			int[] index = this.index;
 
-			return -1;
+			for (int slot = slot(hash); ; slot = (slot + 1) & mask) {
+				int identity = index[slot];
+				if (identity == -1)
+					return -1;
+
+				if (hashes[identity] == hash && components.equals(bitsets[identity]))
+					return identity;
+			}
 		}
 
 		int allocateIdentity(BitVector componentBits, ComponentManager cm) {
@@ -267,10 +433,51 @@ public class ComponentManager extends BaseSystem {
 				mappers.add(cm.getMapper(tf.getTypeFor(i).getType()));
 			}
 
+			return register(componentBits, mappers);
+		}
+
+		/**
+		 * Registers a new composition; caller must ensure the
+		 * composition isn't already known.
+		 *
+		 * @return identity of new composition.
+		 */
+		int register(BitVector componentBits, Bag<ComponentMapper> mappers) {
+			int identity = compositionBits.size();
 			compositionMappers.add(mappers);
 			compositionBits.add(new BitVector(componentBits));
+			compositionHashes.add(componentBits.hashCode());
+
+			if (2 * compositionBits.size() > index.length)
+				rehash(2 * index.length);
+			else
+				insert(identity);
+
+			return identity;
+		}
+
+		private void rehash(int capacity) {
+			index = new int[capacity];
+			mask = capacity - 1;
+			Arrays.fill(index, -1);
+
+			for (int i = 0, s = compositionBits.size(); s > i; i++) {
+				insert(i);
+			}
+		}
+
+		private void insert(int identity) {
+			int slot = slot(compositionHashes.get(identity));
+			while (index[slot] != -1)
+				slot = (slot + 1) & mask;
+
+			index[slot] = identity;
+		}
 
-			return compositionBits.size() - 1;
+		/** Spreads the bits, since composition hashes cluster in the low bits. */
+		private int slot(int hash) {
+			int h = hash * 0x9e3779b9;
+			return (h ^ (h >>> 16)) & mask;
 		}
 	}
 }
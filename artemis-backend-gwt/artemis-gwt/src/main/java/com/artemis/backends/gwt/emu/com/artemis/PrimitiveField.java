@@ -0,0 +1,97 @@
+package com.artemis;
+
+import com.artemis.utils.reflect.Field;
+import com.artemis.utils.reflect.ReflectionException;
+
+/**
+ * Typed access to a primitive field of a component, through reflection.
+ *
+ * @see ArrayComponentMapper
+ */
+final class PrimitiveField {
+	private final Field field;
+
+	PrimitiveField(Field field) {
+		this.field = field;
+	}
+
+	int getInt(Component c) {
+		return (Integer) get(c);
+	}
+
+	void setInt(Component c, int value) {
+		set(c, value);
+	}
+
+	long getLong(Component c) {
+		return (Long) get(c);
+	}
+
+	void setLong(Component c, long value) {
+		set(c, value);
+	}
+
+	float getFloat(Component c) {
+		return (Float) get(c);
+	}
+
+	void setFloat(Component c, float value) {
+		set(c, value);
+	}
+
+	double getDouble(Component c) {
+		return (Double) get(c);
+	}
+
+	void setDouble(Component c, double value) {
+		set(c, value);
+	}
+
+	boolean getBoolean(Component c) {
+		return (Boolean) get(c);
+	}
+
+	void setBoolean(Component c, boolean value) {
+		set(c, value);
+	}
+
+	byte getByte(Component c) {
+		return (Byte) get(c);
+	}
+
+	void setByte(Component c, byte value) {
+		set(c, value);
+	}
+
+	short getShort(Component c) {
+		return (Short) get(c);
+	}
+
+	void setShort(Component c, short value) {
+		set(c, value);
+	}
+
+	char getChar(Component c) {
+		return (Character) get(c);
+	}
+
+	void setChar(Component c, char value) {
+		set(c, value);
+	}
+
+	private Object get(Component c) {
+		try {
+			return field.get(c);
+		} catch (ReflectionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void set(Component c, Object value) {
+		try {
+			field.set(c, value);
+		} catch (ReflectionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
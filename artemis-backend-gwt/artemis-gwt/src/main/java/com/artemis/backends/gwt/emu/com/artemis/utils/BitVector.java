@@ -973,6 +973,8 @@ public class BitVector implements Cloneable {
 
 	public void ensureCapacity(int bits) {} // no need for it here
 
+	public void trim(int bits) {} // no need for it here
+
 	/** @param index the index of the bit
 	 * @return whether the bit is set
 	 * @throws ArrayIndexOutOfBoundsException if index < 0 or index >= words.length</></>*/
@@ -991,4 +993,23 @@ public class BitVector implements Cloneable {
 	public void unsafeSet(int index, boolean value) {
 		set(index, value);
 	}
+
+	/** @param wordIndex index of the word, covering bits <code>64 * wordIndex</code>
+	 *                  through <code>64 * wordIndex + 63</code>
+	 * @return the 64 bits of the word, assembled from two 32-bit words */
+	public long unsafeGetWord(int wordIndex) {
+		int index = wordIndex << 1;
+		long low = getWord(array, index) & 0xffffffffL;
+		long high = getWord(array, index + 1);
+		return (high << 32) | low;
+	}
+
+	/** @param wordIndex index of the word, covering bits <code>64 * wordIndex</code>
+	 *                  through <code>64 * wordIndex + 63</code>
+	 * @param word new value of the word, stored as two 32-bit words */
+	public void unsafeSetWord(int wordIndex, long word) {
+		int index = wordIndex << 1;
+		setWord(array, index, (int) word);
+		setWord(array, index + 1, (int) (word >>> 32));
+	}
 }
\ No newline at end of file
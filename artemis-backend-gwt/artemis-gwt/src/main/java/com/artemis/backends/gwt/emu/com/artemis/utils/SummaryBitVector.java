@@ -0,0 +1,19 @@
+package com.artemis.utils;
+
+/**
+ * Emulated {@link BitVector} is backed by sparse JavaScript arrays,
+ * which already skip empty regions; no summary is kept.
+ */
+public class SummaryBitVector extends BitVector {
+
+	public SummaryBitVector() {
+	}
+
+	public SummaryBitVector(int nbits) {
+		super(nbits);
+	}
+
+	public SummaryBitVector(BitVector copyFrom) {
+		super(copyFrom);
+	}
+}
@@ -0,0 +1,97 @@
+package com.artemis;
+
+import com.artemis.ComponentManager.ComponentIdentityResolver;
+import com.artemis.utils.Bag;
+import com.artemis.utils.BitVector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup cost of {@link ComponentIdentityResolver#getIdentity(BitVector)}
+ * should stay flat as the number of known compositions grows.
+ *
+ * Lives in <code>com.artemis</code> as the resolver is package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Threads(1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+public class ComponentIdentityBenchmark {
+
+	@Param({"16", "256", "1024", "4096", "16384"})
+	public int compositions;
+
+	private ComponentIdentityResolver resolver;
+	private BitVector[] lookups;
+	private BitVector missing;
+	private int index;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random rng = new Random(0x1337);
+		resolver = new ComponentIdentityResolver();
+		lookups = new BitVector[compositions];
+
+		for (int i = 0; compositions > i; i++) {
+			BitVector bits = randomComposition(rng);
+			while (resolver.getIdentity(bits) != -1)
+				bits = randomComposition(rng);
+
+			resolver.register(bits, new Bag<ComponentMapper>());
+			lookups[i] = bits;
+		}
+
+		do {
+			missing = randomComposition(rng);
+		} while (resolver.getIdentity(missing) != -1);
+	}
+
+	@Benchmark
+	public int getIdentity_known() {
+		index = (index + 1) % lookups.length;
+		return resolver.getIdentity(lookups[index]);
+	}
+
+	@Benchmark
+	public int getIdentity_unknown() {
+		return resolver.getIdentity(missing);
+	}
+
+	/** 4-12 component types out of 256, similar to a mid-sized game. */
+	private static BitVector randomComposition(Random rng) {
+		BitVector bits = new BitVector(256);
+		for (int i = 0, s = 4 + rng.nextInt(9); s > i; i++)
+			bits.set(rng.nextInt(256));
+
+		return bits;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(ComponentIdentityBenchmark.class.getSimpleName())
+				.build();
+
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,110 @@
+package com.artemis.benchmark;
+
+import com.artemis.utils.BitVector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Word-wise bulk operations on equally sized bit vectors, from a single
+ * word - typical for component bits - up to 64k words - entity bits of
+ * four million entities. {@link BitVector#intersects(BitVector)} and
+ * {@link BitVector#containsAll(BitVector)} are set up to scan all words.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Threads(1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+public class BitVectorBulkBenchmark {
+
+	@Param({"1", "4", "64", "1024", "65536"})
+	public int words;
+
+	private BitVector target;
+	private BitVector random;
+	private BitVector subset;
+	private BitVector disjoint;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		int bits = words * 64;
+		target = new BitVector(bits);
+		random = new BitVector(bits);
+		subset = new BitVector(bits);
+		disjoint = new BitVector(bits);
+
+		Random rng = new Random(4711);
+		for (int i = 0; bits > i; i++) {
+			if (rng.nextBoolean())
+				random.unsafeSet(i);
+			if ((i & 1) == 0)
+				target.unsafeSet(i);
+			if ((i & 3) == 0)
+				subset.unsafeSet(i);
+			else if ((i & 1) != 0)
+				disjoint.unsafeSet(i);
+		}
+	}
+
+	@Benchmark
+	public BitVector and() {
+		target.and(random);
+		return target;
+	}
+
+	@Benchmark
+	public BitVector andNot() {
+		target.andNot(random);
+		return target;
+	}
+
+	@Benchmark
+	public BitVector or() {
+		target.or(random);
+		return target;
+	}
+
+	@Benchmark
+	public BitVector xor() {
+		target.xor(random);
+		return target;
+	}
+
+	@Benchmark
+	public boolean intersects() {
+		return subset.intersects(disjoint);
+	}
+
+	@Benchmark
+	public boolean containsAll() {
+		return disjoint.containsAll(disjoint);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(BitVectorBulkBenchmark.class.getSimpleName())
+				.build();
+
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,82 @@
+package com.artemis.benchmark;
+
+import com.artemis.utils.BitVector;
+import com.artemis.utils.IntBag;
+import com.artemis.utils.SummaryBitVector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes sparse and dense bit vectors of 1M bits into an {@link IntBag},
+ * as done for subscriptions and per-frame changes. Compares the plain
+ * {@link BitVector} against the counting {@link SummaryBitVector}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Threads(1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+public class BitVectorDecodeBenchmark {
+
+	@Param({"1048576"})
+	public int bits;
+
+	/** Fraction of set bits. */
+	@Param({"0.001", "0.5"})
+	public double density;
+
+	@Param({"false", "true"})
+	public boolean summary;
+
+	private BitVector bv;
+	private final IntBag out = new IntBag();
+
+	@Setup(Level.Trial)
+	public void setup() {
+		bv = summary ? new SummaryBitVector(bits) : new BitVector(bits);
+
+		Random random = new Random(4711);
+		for (int i = 0; bits > i; i++) {
+			if (density > random.nextDouble())
+				bv.unsafeSet(i);
+		}
+	}
+
+	@Benchmark
+	public IntBag toIntBag() {
+		return bv.toIntBag(out);
+	}
+
+	@Benchmark
+	public int cardinality() {
+		return bv.cardinality();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(BitVectorDecodeBenchmark.class.getSimpleName())
+				.build();
+
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,145 @@
+package com.artemis.benchmark;
+
+import com.artemis.Component;
+import com.artemis.ComponentMapper;
+import com.artemis.EntitySubscription;
+import com.artemis.World;
+import com.artemis.WorldConfiguration;
+import com.artemis.utils.IntBag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.artemis.Aspect.all;
+
+/**
+ * Iterates a subscription spanning several compositions, in a world where
+ * ids have been recycled across compositions. Compares entities ordered by
+ * id against entities {@link EntitySubscription#setGroupedByComposition(boolean)
+ * grouped by composition}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Threads(1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+public class CompositionOrderBenchmark {
+
+	public static class Position extends Component {
+		public float x, y;
+	}
+
+	public static class Velocity extends Component {
+		public float x, y;
+	}
+
+	public static class Drag extends Component {
+		public float factor = 0.99f;
+	}
+
+	public static class Gravity extends Component {
+		public float y = -9.81f;
+	}
+
+	@Param({"200000"})
+	public int entityCount;
+
+	@Param({"false", "true"})
+	public boolean grouped;
+
+	private ComponentMapper<Position> positionMapper;
+	private ComponentMapper<Velocity> velocityMapper;
+	private ComponentMapper<Drag> dragMapper;
+	private ComponentMapper<Gravity> gravityMapper;
+	private EntitySubscription moving;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		World world = new World(new WorldConfiguration().expectedEntityCount(entityCount));
+		positionMapper = world.getMapper(Position.class);
+		velocityMapper = world.getMapper(Velocity.class);
+		dragMapper = world.getMapper(Drag.class);
+		gravityMapper = world.getMapper(Gravity.class);
+
+		moving = world.getAspectSubscriptionManager()
+			.get(all(Position.class, Velocity.class))
+			.setGroupedByComposition(grouped);
+
+		Random random = new Random(4711);
+		for (int i = 0; entityCount > i; i++)
+			create(world, random);
+		world.process();
+
+		// recycle ids across compositions
+		for (int round = 0; 4 > round; round++) {
+			for (int i = 0; entityCount / 2 > i; i++)
+				world.delete(random.nextInt(entityCount));
+			world.process();
+
+			for (int i = moving.getEntityCount(); entityCount > i; i++)
+				create(world, random);
+			world.process();
+		}
+	}
+
+	private void create(World world, Random random) {
+		int id = world.create();
+		positionMapper.create(id);
+		velocityMapper.create(id);
+		int archetype = random.nextInt(4);
+		if ((archetype & 1) != 0) dragMapper.create(id);
+		if ((archetype & 2) != 0) gravityMapper.create(id);
+	}
+
+	@Benchmark
+	public float iterate() {
+		IntBag entities = moving.getEntities();
+		int[] ids = entities.getData();
+		float sum = 0;
+		for (int i = 0, s = entities.size(); s > i; i++) {
+			int id = ids[i];
+			Position p = positionMapper.get(id);
+			Velocity v = velocityMapper.get(id);
+			if (dragMapper.has(id)) {
+				float factor = dragMapper.get(id).factor;
+				v.x *= factor;
+				v.y *= factor;
+			}
+			if (gravityMapper.has(id))
+				v.y += gravityMapper.get(id).y;
+
+			p.x += v.x;
+			p.y += v.y;
+			sum += p.y;
+		}
+
+		return sum;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(CompositionOrderBenchmark.class.getSimpleName())
+				.build();
+
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,109 @@
+package com.artemis.benchmark;
+
+import com.artemis.Component;
+import com.artemis.ComponentMapper;
+import com.artemis.EntitySubscription;
+import com.artemis.World;
+import com.artemis.WorldConfiguration;
+import com.artemis.utils.IntBag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.artemis.Aspect.all;
+
+/**
+ * Iterates the survivors of a mass deletion, with the remaining entities
+ * either scattered over the original id range or
+ * {@link World#defragment() defragmented} into a contiguous range.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Threads(1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+public class DefragmentBenchmark {
+
+	public static class Position extends Component {
+		public float x, y;
+	}
+
+	@Param({"1000000"})
+	public int entityCount;
+
+	/** Percentage of entities deleted before iterating. */
+	@Param({"90"})
+	public int deleted;
+
+	@Param({"false", "true"})
+	public boolean defragment;
+
+	private ComponentMapper<Position> positionMapper;
+	private EntitySubscription positions;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		World world = new World(new WorldConfiguration().expectedEntityCount(entityCount));
+		positionMapper = world.getMapper(Position.class);
+		positions = world.getAspectSubscriptionManager().get(all(Position.class));
+
+		for (int i = 0; entityCount > i; i++) {
+			Position p = positionMapper.create(world.create());
+			p.x = i;
+			p.y = -i;
+		}
+		world.process();
+
+		Random random = new Random(4711);
+		for (int i = 0; entityCount > i; i++) {
+			if (deleted > random.nextInt(100))
+				world.delete(i);
+		}
+		world.process();
+
+		if (defragment) {
+			world.defragment();
+			world.trim();
+		}
+	}
+
+	@Benchmark
+	public float iterate() {
+		IntBag entities = positions.getEntities();
+		int[] ids = entities.getData();
+		float sum = 0;
+		for (int i = 0, s = entities.size(); s > i; i++) {
+			Position p = positionMapper.get(ids[i]);
+			sum += p.x + p.y;
+		}
+
+		return sum;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(DefragmentBenchmark.class.getSimpleName())
+				.build();
+
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,110 @@
+package com.artemis.benchmark;
+
+import com.artemis.World;
+import com.artemis.WorldConfiguration;
+import com.artemis.utils.IntDeque;
+import com.artemis.utils.IntLinkedQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claiming specific ids out of a large pool of recycled ids, as
+ * when replaying server-assigned ids via {@link World#createSpecific(int)}.
+ *
+ * Compares the previous free-list, {@link IntDeque}, against
+ * {@link IntLinkedQueue}, which <code>EntityManager</code> now uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Threads(1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+public class EntityRecyclingBenchmark {
+
+	@Param({"1000", "100000", "500000"})
+	public int recycled;
+
+	private IntDeque deque;
+	private IntLinkedQueue queue;
+	private int[] claims;
+	private int index;
+
+	private World world;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		deque = new IntDeque(recycled);
+		queue = new IntLinkedQueue(recycled);
+		for (int i = 0; recycled > i; i++) {
+			deque.add(i);
+			queue.add(i);
+		}
+
+		Random rng = new Random(0x1337);
+		claims = new int[4096];
+		for (int i = 0; claims.length > i; i++)
+			claims[i] = rng.nextInt(recycled);
+
+		world = new World(new WorldConfiguration().expectedEntityCount(recycled));
+		for (int i = 0; recycled > i; i++)
+			world.create();
+		world.process();
+		for (int i = 0; recycled > i; i++)
+			world.delete(i);
+		world.process();
+	}
+
+	@Benchmark
+	public boolean claim_IntDeque() {
+		int id = claims[index++ & 4095];
+		boolean removed = deque.removeValue(id);
+		deque.add(id);
+		return removed;
+	}
+
+	@Benchmark
+	public boolean claim_IntLinkedQueue() {
+		int id = claims[index++ & 4095];
+		boolean removed = queue.remove(id);
+		queue.add(id);
+		return removed;
+	}
+
+	/** Claims a recycled id, then deletes it again to keep the pool size stable. */
+	@Benchmark
+	public int world_createSpecific() {
+		int id = claims[index++ & 4095];
+		world.createSpecific(id);
+		world.delete(id);
+		world.process();
+		return id;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(EntityRecyclingBenchmark.class.getSimpleName())
+				.build();
+
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,117 @@
+package com.artemis.benchmark;
+
+import com.artemis.World;
+import com.artemis.WorldConfiguration;
+import com.artemis.managers.GroupManager;
+import com.artemis.utils.IntBag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mass group operations on {@link GroupManager}: adding all entities to
+ * several groups, then either removing them group by group, or deleting
+ * all of them at once. Deleting also recreates the entities, to keep the
+ * world populated for the next invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Threads(1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+public class GroupManagerBenchmark {
+
+	private static final String[] GROUPS = {"units", "enemies", "visible", "selected"};
+
+	@Param({"100000"})
+	public int entityCount;
+
+	private World world;
+	private GroupManager groupManager;
+	private IntBag entities;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		groupManager = new GroupManager();
+		world = new World(new WorldConfiguration()
+			.expectedEntityCount(entityCount)
+			.setSystem(groupManager));
+
+		entities = new IntBag(entityCount);
+		for (int i = 0; entityCount > i; i++)
+			entities.add(world.create());
+		world.process();
+	}
+
+	@Benchmark
+	public int addRemove() {
+		int sum = addAll();
+		int[] ids = entities.getData();
+		for (String group : GROUPS) {
+			for (int i = 0, s = entities.size(); s > i; i++)
+				groupManager.remove(ids[i], group);
+		}
+
+		return sum + groupManager.getEntities(GROUPS[0]).size();
+	}
+
+	@Benchmark
+	public int addDelete() {
+		int sum = addAll();
+		int[] ids = entities.getData();
+		for (int i = 0, s = entities.size(); s > i; i++)
+			world.delete(ids[i]);
+		world.process();
+
+		entities.setSize(0);
+		for (int i = 0; entityCount > i; i++)
+			entities.add(world.create());
+		world.process();
+
+		return sum + groupManager.getEntities(GROUPS[0]).size();
+	}
+
+	private int addAll() {
+		int[] ids = entities.getData();
+		for (int i = 0, s = entities.size(); s > i; i++) {
+			int id = ids[i];
+			groupManager.add(id, GROUPS[0]);
+			if ((id & 1) == 0)
+				groupManager.add(id, GROUPS[1], GROUPS[2]);
+			if ((id & 7) == 0)
+				groupManager.add(id, GROUPS[3]);
+		}
+
+		int sum = 0;
+		for (String group : GROUPS)
+			sum += groupManager.getEntities(group).size();
+
+		return sum;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(GroupManagerBenchmark.class.getSimpleName())
+				.build();
+
+		new Runner(opt).run();
+	}
+}
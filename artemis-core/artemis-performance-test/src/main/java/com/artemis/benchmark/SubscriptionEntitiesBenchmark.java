@@ -0,0 +1,106 @@
+package com.artemis.benchmark;
+
+import com.artemis.Component;
+import com.artemis.ComponentMapper;
+import com.artemis.EntitySubscription;
+import com.artemis.World;
+import com.artemis.WorldConfiguration;
+import com.artemis.utils.IntBag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.artemis.Aspect.all;
+
+/**
+ * One update followed by iterating a large subscription, with few (low churn)
+ * or many (high churn) entities entering and leaving the subscription.
+ *
+ * Compares rebuilding {@link EntitySubscription#getEntities()} from the
+ * active bits against maintaining it
+ * {@link EntitySubscription#setIncrementalEntities(boolean) incrementally}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Threads(1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+public class SubscriptionEntitiesBenchmark {
+
+	public static class Body extends Component {}
+	public static class Hidden extends Component {}
+
+	@Param({"200000"})
+	public int entityCount;
+
+	@Param({"5", "20000"})
+	public int churn;
+
+	@Param({"false", "true"})
+	public boolean incremental;
+
+	private World world;
+	private ComponentMapper<Hidden> hiddenMapper;
+	private EntitySubscription visible;
+	private int cursor;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		world = new World(new WorldConfiguration().expectedEntityCount(entityCount));
+		ComponentMapper<Body> bodyMapper = world.getMapper(Body.class);
+		hiddenMapper = world.getMapper(Hidden.class);
+
+		visible = world.getAspectSubscriptionManager()
+			.get(all(Body.class).exclude(Hidden.class))
+			.setIncrementalEntities(incremental);
+
+		for (int i = 0; entityCount > i; i++)
+			bodyMapper.create(world.create());
+
+		world.process();
+	}
+
+	@Benchmark
+	public int update_and_iterate() {
+		for (int i = 0; churn > i; i++) {
+			int id = cursor;
+			cursor = (cursor + 7919) % entityCount;
+			hiddenMapper.set(id, !hiddenMapper.has(id));
+		}
+		world.process();
+
+		IntBag entities = visible.getEntities();
+		int[] ids = entities.getData();
+		int sum = 0;
+		for (int i = 0, s = entities.size(); s > i; i++)
+			sum += ids[i];
+
+		return sum;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(SubscriptionEntitiesBenchmark.class.getSimpleName())
+				.build();
+
+		new Runner(opt).run();
+	}
+}
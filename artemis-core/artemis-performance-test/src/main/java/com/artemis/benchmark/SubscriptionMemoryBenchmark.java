@@ -0,0 +1,119 @@
+package com.artemis.benchmark;
+
+import com.artemis.Component;
+import com.artemis.ComponentMapper;
+import com.artemis.World;
+import com.artemis.WorldConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.artemis.Aspect.all;
+
+/**
+ * Grows a world with many subscriptions to its full entity capacity,
+ * then reports the heap retained per subscription. Subscriptions only
+ * keep their active entity bitset at entity capacity; changes are
+ * tracked in short lists.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@Threads(1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SubscriptionMemoryBenchmark {
+
+	public static class A extends Component {}
+	public static class B extends Component {}
+	public static class C extends Component {}
+	public static class D extends Component {}
+	public static class E extends Component {}
+	public static class F extends Component {}
+	public static class G extends Component {}
+	public static class H extends Component {}
+
+	@SuppressWarnings("unchecked")
+	private static final Class<? extends Component>[] TYPES = new Class[] {
+		A.class, B.class, C.class, D.class, E.class, F.class, G.class, H.class
+	};
+
+	@Param({"4000000"})
+	public int entityCount;
+
+	@Param({"150"})
+	public int subscriptionCount;
+
+	private World world;
+	private long baseline;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		world = null;
+		baseline = usedHeap();
+	}
+
+	@Benchmark
+	public World grow() {
+		world = new World(new WorldConfiguration());
+		int created = 0;
+		for (int first = 0; TYPES.length > first; first++) {
+			for (int second = 0; TYPES.length > second; second++) {
+				for (int third = second + 1; TYPES.length > third && subscriptionCount > created; third++) {
+					world.getAspectSubscriptionManager()
+						.get(all(TYPES[first]).one(TYPES[second], TYPES[third]));
+					created++;
+				}
+			}
+		}
+
+		ComponentMapper<A> mapper = world.getMapper(A.class);
+		for (int i = 0; entityCount > i; i++)
+			mapper.create(world.create());
+		world.process();
+
+		return world;
+	}
+
+	@TearDown(Level.Iteration)
+	public void report() {
+		long retained = usedHeap() - baseline;
+		int subscriptions = world.getAspectSubscriptionManager().getSubscriptions().size();
+		System.out.printf("%n%d subscriptions, %d entities: %d KiB retained, entity bitsets %d KiB per subscription%n",
+			subscriptions, entityCount, retained / 1024, entityCount / 8 / 1024);
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; 3 > i; i++)
+			System.gc();
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(SubscriptionMemoryBenchmark.class.getSimpleName())
+				.build();
+
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,557 @@
+package com.artemis;
+
+import com.artemis.annotations.ArrayStorage;
+import com.artemis.utils.Bag;
+import com.artemis.utils.reflect.ClassReflection;
+import com.artemis.utils.reflect.Field;
+
+import java.util.Arrays;
+
+/**
+ * Mapper for {@link ArrayStorage} components: each primitive field is
+ * stored in an array indexed by entity id - a structure of arrays.
+ * <p>
+ * The fastest access is through the field arrays, see
+ * {@link #getFloats(String)} and friends. Arrays are replaced as the
+ * world grows, fetch them again each time the system processes.
+ * </p>
+ * <p>
+ * {@link #get(int)} and {@link #create(int)} return a single flyweight
+ * instance, loaded with the values of the requested entity. Changes to
+ * the flyweight are written back when it is moved to another entity, or
+ * when any field array is fetched. Only fields changed through the
+ * flyweight are written back; bags of components by type contain the
+ * flyweight.
+ * </p>
+ * <p>
+ * There is only ever one live instance: all references returned by the
+ * mapper are the same object. Retrieving the component of another entity
+ * reloads it, so earlier references silently alias the new entity -
+ * {@code a = get(1); b = get(2); a.x = 0;} changes entity 2. Copy values
+ * out before retrieving the next component. For the same reason, the
+ * mapper can't be used by {@link ConcurrentChanges} tasks, and counts as
+ * written by each system reading it under {@link ParallelInvocationStrategy}.
+ * </p>
+ * <p>
+ * Creating and removing components, transmuters and archetypes work as
+ * with any other component.
+ * </p>
+ *
+ * @param <A> Component type to map.
+ * @see ArrayStorage
+ */
+public class ArrayComponentMapper<A extends Component> extends ComponentMapper<A> {
+	private final A flyweight;
+	private final Column[] columns;
+	/** Entity the flyweight is loaded from, or {@code -1}. */
+	private int flyweightId = -1;
+
+	public ArrayComponentMapper(Class<A> type, World world) {
+		super(type, world, new FlyweightComponentStorage<A>());
+
+		if (this.type.isPooled)
+			throw new InvalidComponentException(type, "Pooled components can't use @ArrayStorage.");
+
+		flyweight = ComponentManager.newInstance(type);
+
+		Bag<Column> columns = new Bag<Column>();
+		for (Class c = type; c != Component.class; c = c.getSuperclass()) {
+			for (Field field : ClassReflection.getDeclaredFields(c)) {
+				if (field.isStatic() || field.isTransient())
+					continue;
+
+				field.setAccessible(true);
+				columns.add(createColumn(type, field));
+			}
+		}
+
+		this.columns = new Column[columns.size()];
+		for (int i = 0, s = columns.size(); s > i; i++) {
+			this.columns[i] = columns.get(i);
+		}
+	}
+
+	@Override
+	public A get(int entityId) {
+		checkConcurrentAccess();
+		if (components.get(entityId) == null)
+			return null;
+
+		if (flyweightId != entityId) {
+			flush();
+			load(entityId);
+		}
+
+		return flyweight;
+	}
+
+	@Override
+	public boolean has(int entityId) {
+		return components.get(entityId) != null && !purgatory.has(entityId);
+	}
+
+	@Override
+	public void remove(int entityId) {
+		checkConcurrentAccess();
+		if (components.get(entityId) != null) {
+			removeTransmuter.transmuteNoOperation(entityId);
+			purgatory.mark(entityId);
+		}
+	}
+
+	@Override
+	protected void internalRemove(int entityId) {
+		if (components.get(entityId) != null)
+			purgatory.mark(entityId);
+	}
+
+	@Override
+	public A create(int entityId) {
+		checkConcurrentAccess();
+		if (components.get(entityId) == null || purgatory.unmark(entityId)) {
+			// running transmuter first, as it performs som validation
+			createTransmuter.transmuteNoOperation(entityId);
+			reset(entityId);
+		}
+
+		return get(entityId);
+	}
+
+	@Override
+	public A internalCreate(int entityId) {
+		if (components.get(entityId) == null || purgatory.unmark(entityId))
+			reset(entityId);
+
+		return get(entityId);
+	}
+
+	@Override
+	void replace(int entityId, A component) {
+		if (flyweightId == entityId)
+			flyweightId = -1;
+
+		for (Column column : columns) {
+			column.store(entityId, component);
+		}
+	}
+
+	@Override
+	void ensureCapacity(int newSize) {
+		super.ensureCapacity(newSize);
+		for (Column column : columns) {
+			column.ensureCapacity(newSize);
+		}
+	}
+
+	@Override
+	boolean hasInstances() {
+		return false;
+	}
+
+	@Override
+	void trim(int newSize) {
+		flush();
+		super.trim(newSize);
+		for (Column column : columns) {
+			column.trim(newSize);
+		}
+	}
+
+	@Override
+	void move(int fromEntityId, int toEntityId) {
+		flush();
+		super.move(fromEntityId, toEntityId);
+		for (Column column : columns) {
+			column.move(fromEntityId, toEntityId);
+		}
+	}
+
+	/**
+	 * Writes back any changes to the flyweight, and detaches it from its
+	 * entity. Called by all field array accessors.
+	 */
+	public void flush() {
+		if (flyweightId == -1)
+			return;
+
+		for (Column column : columns) {
+			column.flush(flyweightId, flyweight);
+		}
+
+		flyweightId = -1;
+	}
+
+	/**
+	 * @param field name of a {@code float} field.
+	 * @return values of the field, indexed by entity id.
+	 */
+	public float[] getFloats(String field) {
+		return ((FloatColumn) column(field, FloatColumn.class)).data;
+	}
+
+	/**
+	 * @param field name of an {@code int} field.
+	 * @return values of the field, indexed by entity id.
+	 */
+	public int[] getInts(String field) {
+		return ((IntColumn) column(field, IntColumn.class)).data;
+	}
+
+	/**
+	 * @param field name of a {@code long} field.
+	 * @return values of the field, indexed by entity id.
+	 */
+	public long[] getLongs(String field) {
+		return ((LongColumn) column(field, LongColumn.class)).data;
+	}
+
+	/**
+	 * @param field name of a {@code double} field.
+	 * @return values of the field, indexed by entity id.
+	 */
+	public double[] getDoubles(String field) {
+		return ((DoubleColumn) column(field, DoubleColumn.class)).data;
+	}
+
+	/**
+	 * @param field name of a {@code boolean} field.
+	 * @return values of the field, indexed by entity id.
+	 */
+	public boolean[] getBooleans(String field) {
+		return ((BooleanColumn) column(field, BooleanColumn.class)).data;
+	}
+
+	private Column column(String field, Class<? extends Column> kind) {
+		flush();
+		for (Column column : columns) {
+			if (column.field.getName().equals(field)) {
+				if (column.getClass() != kind)
+					throw new IllegalArgumentException(ClassReflection.getSimpleName(type.getType())
+						+ "." + field + " is not of the requested type.");
+
+				return column;
+			}
+		}
+
+		throw new IllegalArgumentException("No field " + field + " in " + ClassReflection.getSimpleName(type.getType()));
+	}
+
+	private void reset(int entityId) {
+		components.unsafeSet(entityId, flyweight);
+		for (Column column : columns) {
+			column.clear(entityId);
+		}
+
+		if (flyweightId == entityId)
+			flyweightId = -1;
+	}
+
+	private void load(int entityId) {
+		for (Column column : columns) {
+			column.load(entityId, flyweight);
+		}
+
+		flyweightId = entityId;
+	}
+
+	private Column createColumn(Class<A> type, Field field) {
+		Class fieldType = field.getType();
+		int capacity = components.getCapacity();
+		if (fieldType == float.class) {
+			return new FloatColumn(field, capacity);
+		} else if (fieldType == int.class) {
+			return new IntColumn(field, capacity);
+		} else if (fieldType == long.class) {
+			return new LongColumn(field, capacity);
+		} else if (fieldType == double.class) {
+			return new DoubleColumn(field, capacity);
+		} else if (fieldType == boolean.class) {
+			return new BooleanColumn(field, capacity);
+		}
+
+		throw new InvalidComponentException(type,
+			"Unsupported field type for @ArrayStorage: " + field.getName());
+	}
+
+	/** Values of one field for all entities. */
+	private abstract static class Column {
+		final Field field;
+		final PrimitiveField access;
+
+		Column(Field field) {
+			this.field = field;
+			access = new PrimitiveField(field);
+		}
+
+		/** Copies the entity's value to the flyweight. */
+		abstract void load(int entityId, Component flyweight);
+
+		/** Writes back the flyweight's value, if changed since loaded. */
+		abstract void flush(int entityId, Component flyweight);
+
+		abstract void store(int entityId, Component component);
+
+		abstract void move(int fromEntityId, int toEntityId);
+
+		abstract void clear(int entityId);
+
+		abstract void ensureCapacity(int newSize);
+
+		abstract void trim(int newSize);
+	}
+
+	private static final class FloatColumn extends Column {
+		float[] data;
+		float loaded;
+
+		FloatColumn(Field field, int capacity) {
+			super(field);
+			data = new float[capacity];
+		}
+
+		@Override
+		void load(int entityId, Component flyweight) {
+			loaded = data[entityId];
+			access.setFloat(flyweight, loaded);
+		}
+
+		@Override
+		void flush(int entityId, Component flyweight) {
+			float value = access.getFloat(flyweight);
+			if (Float.floatToRawIntBits(value) != Float.floatToRawIntBits(loaded))
+				data[entityId] = value;
+		}
+
+		@Override
+		void store(int entityId, Component component) {
+			data[entityId] = access.getFloat(component);
+		}
+
+		@Override
+		void move(int fromEntityId, int toEntityId) {
+			data[toEntityId] = data[fromEntityId];
+			data[fromEntityId] = 0;
+		}
+
+		@Override
+		void clear(int entityId) {
+			data[entityId] = 0;
+		}
+
+		@Override
+		void ensureCapacity(int newSize) {
+			if (newSize > data.length)
+				data = Arrays.copyOf(data, newSize);
+		}
+
+		@Override
+		void trim(int newSize) {
+			if (newSize < data.length)
+				data = Arrays.copyOf(data, newSize);
+		}
+	}
+
+	private static final class IntColumn extends Column {
+		int[] data;
+		int loaded;
+
+		IntColumn(Field field, int capacity) {
+			super(field);
+			data = new int[capacity];
+		}
+
+		@Override
+		void load(int entityId, Component flyweight) {
+			loaded = data[entityId];
+			access.setInt(flyweight, loaded);
+		}
+
+		@Override
+		void flush(int entityId, Component flyweight) {
+			int value = access.getInt(flyweight);
+			if (value != loaded)
+				data[entityId] = value;
+		}
+
+		@Override
+		void store(int entityId, Component component) {
+			data[entityId] = access.getInt(component);
+		}
+
+		@Override
+		void move(int fromEntityId, int toEntityId) {
+			data[toEntityId] = data[fromEntityId];
+			data[fromEntityId] = 0;
+		}
+
+		@Override
+		void clear(int entityId) {
+			data[entityId] = 0;
+		}
+
+		@Override
+		void ensureCapacity(int newSize) {
+			if (newSize > data.length)
+				data = Arrays.copyOf(data, newSize);
+		}
+
+		@Override
+		void trim(int newSize) {
+			if (newSize < data.length)
+				data = Arrays.copyOf(data, newSize);
+		}
+	}
+
+	private static final class LongColumn extends Column {
+		long[] data;
+		long loaded;
+
+		LongColumn(Field field, int capacity) {
+			super(field);
+			data = new long[capacity];
+		}
+
+		@Override
+		void load(int entityId, Component flyweight) {
+			loaded = data[entityId];
+			access.setLong(flyweight, loaded);
+		}
+
+		@Override
+		void flush(int entityId, Component flyweight) {
+			long value = access.getLong(flyweight);
+			if (value != loaded)
+				data[entityId] = value;
+		}
+
+		@Override
+		void store(int entityId, Component component) {
+			data[entityId] = access.getLong(component);
+		}
+
+		@Override
+		void move(int fromEntityId, int toEntityId) {
+			data[toEntityId] = data[fromEntityId];
+			data[fromEntityId] = 0;
+		}
+
+		@Override
+		void clear(int entityId) {
+			data[entityId] = 0;
+		}
+
+		@Override
+		void ensureCapacity(int newSize) {
+			if (newSize > data.length)
+				data = Arrays.copyOf(data, newSize);
+		}
+
+		@Override
+		void trim(int newSize) {
+			if (newSize < data.length)
+				data = Arrays.copyOf(data, newSize);
+		}
+	}
+
+	private static final class DoubleColumn extends Column {
+		double[] data;
+		double loaded;
+
+		DoubleColumn(Field field, int capacity) {
+			super(field);
+			data = new double[capacity];
+		}
+
+		@Override
+		void load(int entityId, Component flyweight) {
+			loaded = data[entityId];
+			access.setDouble(flyweight, loaded);
+		}
+
+		@Override
+		void flush(int entityId, Component flyweight) {
+			double value = access.getDouble(flyweight);
+			if (Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(loaded))
+				data[entityId] = value;
+		}
+
+		@Override
+		void store(int entityId, Component component) {
+			data[entityId] = access.getDouble(component);
+		}
+
+		@Override
+		void move(int fromEntityId, int toEntityId) {
+			data[toEntityId] = data[fromEntityId];
+			data[fromEntityId] = 0;
+		}
+
+		@Override
+		void clear(int entityId) {
+			data[entityId] = 0;
+		}
+
+		@Override
+		void ensureCapacity(int newSize) {
+			if (newSize > data.length)
+				data = Arrays.copyOf(data, newSize);
+		}
+
+		@Override
+		void trim(int newSize) {
+			if (newSize < data.length)
+				data = Arrays.copyOf(data, newSize);
+		}
+	}
+
+	private static final class BooleanColumn extends Column {
+		boolean[] data;
+		boolean loaded;
+
+		BooleanColumn(Field field, int capacity) {
+			super(field);
+			data = new boolean[capacity];
+		}
+
+		@Override
+		void load(int entityId, Component flyweight) {
+			loaded = data[entityId];
+			access.setBoolean(flyweight, loaded);
+		}
+
+		@Override
+		void flush(int entityId, Component flyweight) {
+			boolean value = access.getBoolean(flyweight);
+			if (value != loaded)
+				data[entityId] = value;
+		}
+
+		@Override
+		void store(int entityId, Component component) {
+			data[entityId] = access.getBoolean(component);
+		}
+
+		@Override
+		void move(int fromEntityId, int toEntityId) {
+			data[toEntityId] = data[fromEntityId];
+			data[fromEntityId] = false;
+		}
+
+		@Override
+		void clear(int entityId) {
+			data[entityId] = false;
+		}
+
+		@Override
+		void ensureCapacity(int newSize) {
+			if (newSize > data.length)
+				data = Arrays.copyOf(data, newSize);
+		}
+
+		@Override
+		void trim(int newSize) {
+			if (newSize < data.length)
+				data = Arrays.copyOf(data, newSize);
+		}
+	}
+}
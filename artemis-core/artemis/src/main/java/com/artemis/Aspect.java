@@ -216,6 +216,8 @@ public class Aspect {
 		private final Bag<Class<? extends Component>> allTypes;
 		private final Bag<Class<? extends Component>> exclusionTypes;
 		private final Bag<Class<? extends Component>> oneTypes;
+		/** Number of repeated types dropped while building. */
+		private int duplicates;
 
 		private Builder() {
 			allTypes = new Bag<Class<? extends Component>>();
@@ -235,7 +237,7 @@ public class Aspect {
 		@SafeVarargs
 		public final Builder all(Class<? extends Component>... types) {
 			for (Class<? extends Component> t : types) {
-				allTypes.add(t);
+				add(allTypes, t);
 			}
 			return this;
 		}
@@ -248,9 +250,17 @@ public class Aspect {
 			b.allTypes.addAll(allTypes);
 			b.exclusionTypes.addAll(exclusionTypes);
 			b.oneTypes.addAll(oneTypes);
+			b.duplicates = duplicates;
 			return b;
 		}
 
+		private void add(Bag<Class<? extends Component>> types, Class<? extends Component> type) {
+			if (types.contains(type))
+				duplicates++;
+			else
+				types.add(type);
+		}
+
 		/**
 		 * Returns an aspect where an entity must possess all of the specified
 		 * component types.
@@ -262,7 +272,7 @@ public class Aspect {
 		 */
 		public Builder all(Collection<Class<? extends Component>> types) {
 			for (Class<? extends Component> t : types) {
-				allTypes.add(t);
+				add(allTypes, t);
 			}
 
 			return this;
@@ -280,7 +290,7 @@ public class Aspect {
 		@SafeVarargs
 		public final Builder one(Class<? extends Component>... types) {
 			for (Class<? extends Component> t : types)
-				oneTypes.add(t);
+				add(oneTypes, t);
 
 			return this;
 		}
@@ -296,7 +306,7 @@ public class Aspect {
 		 */
 		public Builder one(Collection<Class<? extends Component>> types) {
 			for (Class<? extends Component> t : types)
-				oneTypes.add(t);
+				add(oneTypes, t);
 
 			return this;
 		}
@@ -317,7 +327,7 @@ public class Aspect {
 		@SafeVarargs
 		public final Builder exclude(Class<? extends Component>... types) {
 			for (Class<? extends Component> t : types)
-				exclusionTypes.add(t);
+				add(exclusionTypes, t);
 			return this;
 		}
 
@@ -336,7 +346,7 @@ public class Aspect {
 		 */
 		public Builder exclude(Collection<Class<? extends Component>> types) {
 			for (Class<? extends Component> t : types)
-				exclusionTypes.add(t);
+				add(exclusionTypes, t);
 
 			return this;
 		}
@@ -362,6 +372,10 @@ public class Aspect {
 			}
 		}
 
+		/**
+		 * Builders are equal when they match the same entities: the order
+		 * in which types were added, and any repeated types, don't matter.
+		 */
 		@Override
 		public boolean equals(Object o) {
 			if (this == o) return true;
@@ -369,11 +383,11 @@ public class Aspect {
 
 			Builder builder = (Builder) o;
 
-			if (!allTypes.equals(builder.allTypes))
+			if (!sameTypes(allTypes, builder.allTypes))
 				return false;
-			if (!exclusionTypes.equals(builder.exclusionTypes))
+			if (!sameTypes(exclusionTypes, builder.exclusionTypes))
 				return false;
-			if (!oneTypes.equals(builder.oneTypes))
+			if (!sameTypes(oneTypes, builder.oneTypes))
 				return false;
 
 			return true;
@@ -381,12 +395,43 @@ public class Aspect {
 
 		@Override
 		public int hashCode() {
-			int result = allTypes.hashCode();
-			result = 31 * result + exclusionTypes.hashCode();
-			result = 31 * result + oneTypes.hashCode();
+			int result = typesHash(allTypes);
+			result = 31 * result + typesHash(exclusionTypes);
+			result = 31 * result + typesHash(oneTypes);
 			return result;
 		}
 
+		/**
+		 * @return {@code true} if both builders declare the same types in the
+		 *         same order, with the same number of repeated types.
+		 */
+		boolean isDeclaredAs(Builder builder) {
+			return duplicates == builder.duplicates
+				&& allTypes.equals(builder.allTypes)
+				&& exclusionTypes.equals(builder.exclusionTypes)
+				&& oneTypes.equals(builder.oneTypes);
+		}
+
+		private static boolean sameTypes(Bag<Class<? extends Component>> a, Bag<Class<? extends Component>> b) {
+			if (a.size() != b.size())
+				return false;
+
+			for (int i = 0, s = a.size(); s > i; i++) {
+				if (!b.contains(a.get(i)))
+					return false;
+			}
+			return true;
+		}
+
+		/** Order independent hash of the types. */
+		private static int typesHash(Bag<Class<? extends Component>> types) {
+			int hash = 0;
+			for (int i = 0, s = types.size(); s > i; i++) {
+				hash += types.get(i).hashCode();
+			}
+			return hash;
+		}
+
 		@Override
 		public String toString() {
 			return "Aspect[" +
@@ -2,6 +2,7 @@ package com.artemis;
 
 import static com.artemis.Aspect.all;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -26,9 +27,31 @@ public class AspectSubscriptionManager extends BaseSystem {
 	private final Map<Aspect.Builder, EntitySubscription> subscriptionMap;
 	private final Bag<EntitySubscription> subscriptions = new Bag(EntitySubscription.class);
 
+	/** Minimum number of changed entities before considering word-parallel processing. */
+	static final int DENSE_MIN_CHANGED = 1024;
+	/** Word-parallel processing requires at least one in this many ids in the changed range to be changed. */
+	static final int DENSE_MAX_SPACING = 8;
+
 	private final IntBag changed = new IntBag();
 	private final IntBag deleted = new IntBag();
 
+	/**
+	 * Composition id of each entity as of the previous update, plus one;
+	 * {@code 0} for entities not yet seen by any subscription.
+	 */
+	private final IntBag previousIdentities = new IntBag();
+	private final CompositionTransitions transitions = new CompositionTransitions();
+
+	/**
+	 * Subscriptions only agree with {@link #previousIdentities} when none
+	 * were created since the last update, as new subscriptions synchronize
+	 * against the current compositions.
+	 */
+	private boolean routable;
+
+	/** See {@link #getCollapsedDuplicates()}. */
+	private int collapsedDuplicates;
+
 	protected AspectSubscriptionManager() {
 		subscriptionMap = new HashMap<Aspect.Builder, EntitySubscription>();
 	}
@@ -60,8 +83,104 @@ public class AspectSubscriptionManager extends BaseSystem {
 	 * @return {@link EntitySubscription} for aspect.
 	 */
 	public EntitySubscription get(Aspect.Builder builder) {
+		EntitySubscription subscription = subscription(builder);
+		subscription.permanent = true;
+		return subscription;
+	}
+
+	/**
+	 * <p>Gets the entity subscription for the {@link Aspect}, and retains it
+	 * until a matching {@link #release(EntitySubscription)}.</p>
+	 *
+	 * <p>Unlike subscriptions obtained through {@link #get(Aspect.Builder)},
+	 * which live as long as the world, acquired subscriptions are removed
+	 * once all references have been released.</p>
+	 *
+	 * @param builder Aspect to match.
+	 * @return {@link EntitySubscription} for aspect.
+	 */
+	public EntitySubscription acquire(Aspect.Builder builder) {
+		EntitySubscription subscription = subscription(builder);
+		subscription.references++;
+		return subscription;
+	}
+
+	/**
+	 * <p>Releases a subscription obtained through {@link #acquire(Aspect.Builder)}.
+	 * Once all references are released, the subscription stops being updated and
+	 * its entity stores are unregistered - unless the subscription has also been
+	 * obtained through {@link #get(Aspect.Builder)}.</p>
+	 *
+	 * <p>Must not be called while the world is processing entity changes,
+	 * such as from within a {@link EntitySubscription.SubscriptionListener}.</p>
+	 *
+	 * @param subscription acquired subscription.
+	 * @throws IllegalStateException if the subscription holds no references.
+	 */
+	public void release(EntitySubscription subscription) {
+		if (subscription.references == 0)
+			throw new IllegalStateException("Releasing unacquired " + subscription);
+
+		if (--subscription.references > 0 || subscription.permanent)
+			return;
+
+		subscriptionMap.remove(subscription.getAspectBuilder());
+		int index = indexOf(subscription);
+		Object[] data = subscriptions.getData();
+		System.arraycopy(data, index + 1, data, index, subscriptions.size() - index - 1);
+		subscriptions.remove(subscriptions.size() - 1);
+
+		// cached transitions refer to subscriptions by index
+		transitions.clear();
+		subscription.release(world.getEntityManager());
+	}
+
+	private int indexOf(EntitySubscription subscription) {
+		for (int i = 0, s = subscriptions.size(); s > i; i++) {
+			if (subscriptions.get(i) == subscription)
+				return i;
+		}
+		throw new IllegalStateException(subscription + " is not managed");
+	}
+
+	private EntitySubscription subscription(Aspect.Builder builder) {
 		EntitySubscription subscription = subscriptionMap.get(builder);
-		return (subscription != null) ? subscription : createSubscription(builder);
+		if (subscription == null)
+			return createSubscription(builder);
+
+		if (!subscription.aspectReflection.isDeclaredAs(builder))
+			collapsedDuplicates++;
+
+		return subscription;
+	}
+
+	/**
+	 * @param aspect aspect to match.
+	 * @return existing subscription matching the same entities, or {@code null}.
+	 */
+	EntitySubscription find(Aspect aspect) {
+		for (int i = 0, s = subscriptions.size(); s > i; i++) {
+			Aspect other = subscriptions.get(i).getAspect();
+			if (other.getAllSet().equals(aspect.getAllSet())
+					&& other.getOneSet().equals(aspect.getOneSet())
+					&& other.getExclusionSet().equals(aspect.getExclusionSet()))
+				return subscriptions.get(i);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Number of times a subscription was requested with an aspect equivalent
+	 * to, but declared differently from, an existing subscription's - such as
+	 * <code>all(A.class, B.class)</code> and <code>all(B.class, A.class)</code>.
+	 * Equivalent aspects share a single subscription. Inspect after world
+	 * initialization to find systems declaring the same aspect differently.
+	 *
+	 * @return number of requests resolved to an equivalent subscription.
+	 */
+	public int getCollapsedDuplicates() {
+		return collapsedDuplicates;
 	}
 
 	private EntitySubscription createSubscription(Aspect.Builder builder) {
@@ -69,6 +188,9 @@ public class AspectSubscriptionManager extends BaseSystem {
 		subscriptionMap.put(builder, entitySubscription);
 		subscriptions.add(entitySubscription);
 
+		transitions.clear();
+		routable = false;
+
 		world.getComponentManager().synchronize(entitySubscription);
 		return entitySubscription;
 	}
@@ -89,6 +211,19 @@ public class AspectSubscriptionManager extends BaseSystem {
 	void process(BitVector changedBits, BitVector deletedBits) {
 		toEntityIntBags(changedBits, deletedBits);
 
+		if (routable && !isDense(changed)) {
+			processRouted();
+			return;
+		}
+
+		updatePreviousIdentities();
+		routable = true;
+
+		if (isDense(changed)) {
+			processWords();
+			return;
+		}
+
 		// note: processAll != process
 		subscriptions.get(0).processAll(changed, deleted);
 
@@ -97,14 +232,141 @@ public class AspectSubscriptionManager extends BaseSystem {
 		}
 	}
 
+	/**
+	 * Same as {@link #process(BitVector, BitVector)}, but each entity is only
+	 * offered to the subscriptions whose interest differs between its
+	 * previous and current composition.
+	 */
+	private void processRouted() {
+		int[] previous = previousIdentities.getData();
+
+		// all-subscription removes deleted entities unconditionally
+		subscriptions.get(0).deletedAll(deleted);
+
+		int[] ids = deleted.getData();
+		for (int i = 0, s = deleted.size(); s > i; i++) {
+			int id = ids[i];
+			int[] flipped = transitions(previous[id], 0);
+			previous[id] = 0;
+			for (int j = 0, t = flipped.length; t > j; j++) {
+				if (flipped[j] != 0)
+					subscriptions.get(flipped[j]).removeIfActive(id);
+			}
+		}
+
+		ids = changed.getData();
+		for (int i = 0, s = changed.size(); s > i; i += 2) {
+			int id = ids[i];
+			int cid = ids[i + 1];
+			int[] flipped = transitions(previous[id], cid + 1);
+			previous[id] = cid + 1;
+			for (int j = 0, t = flipped.length; t > j; j++) {
+				subscriptions.get(flipped[j]).check(id, cid);
+			}
+		}
+
+		for (int i = 0, s = subscriptions.size(); s > i; i++) {
+			subscriptions.get(i).informEntityChanges();
+		}
+	}
+
+	/**
+	 * @param from previous composition id plus one, {@code 0} if none.
+	 * @param to current composition id plus one, {@code 0} if deleted.
+	 * @return indices of subscriptions whose interest differs between the compositions.
+	 */
+	private int[] transitions(int from, int to) {
+		int[] flipped = transitions.get(from, to);
+		if (flipped == null) {
+			IntBag indices = new IntBag();
+			for (int i = 0, s = subscriptions.size(); s > i; i++) {
+				BitVector interest = subscriptions.get(i).aspectCache;
+				boolean before = from != 0 && interest.unsafeGet(from - 1);
+				boolean after = to != 0 && interest.unsafeGet(to - 1);
+				if (before != after)
+					indices.add(i);
+			}
+
+			flipped = Arrays.copyOf(indices.getData(), indices.size());
+			transitions.put(from, to, flipped);
+		}
+
+		return flipped;
+	}
+
+	private void updatePreviousIdentities() {
+		int[] previous = previousIdentities.getData();
+
+		int[] ids = deleted.getData();
+		for (int i = 0, s = deleted.size(); s > i; i++) {
+			previous[ids[i]] = 0;
+		}
+
+		ids = changed.getData();
+		for (int i = 0, s = changed.size(); s > i; i += 2) {
+			previous[ids[i]] = ids[i + 1] + 1;
+		}
+	}
+
+	/** Same as {@link #process(BitVector, BitVector)}, but 64 entities at a time. */
+	private void processWords() {
+		subscriptions.get(0).processAllWords(changed, deleted);
+
+		for (int i = 1, s = subscriptions.size(); s > i; i++) {
+			subscriptions.get(i).processWords(changed, deleted);
+		}
+	}
+
+	/**
+	 * Large batches of closely spaced changes - mass spawns, level loads - are
+	 * cheaper to process word by word than entity by entity.
+	 *
+	 * @param entitiesWithCompositions pairs of entity id and composition id, sorted by entity id.
+	 * @return {@code true} if the changes are numerous and dense.
+	 */
+	private static boolean isDense(IntBag entitiesWithCompositions) {
+		int count = entitiesWithCompositions.size() / 2;
+		if (count < DENSE_MIN_CHANGED)
+			return false;
+
+		int[] ids = entitiesWithCompositions.getData();
+		int span = ids[entitiesWithCompositions.size() - 2] - ids[0] + 1;
+		return (long) count * DENSE_MAX_SPACING >= span;
+	}
+
 	private void toEntityIntBags(BitVector changed, BitVector deleted) {
 		changed.toIntBagIdCid(world.getComponentManager(), this.changed);
 		deleted.toIntBag(this.deleted);
+		previousIdentities.ensureCapacity(world.getEntityManager().getNextID());
 
 		changed.clear();
 		deleted.clear();
 	}
 
+	/** Moves per entity state of relocated entities. */
+	void relocate(EntityRemap remap) {
+		int[] previous = previousIdentities.getData();
+		for (int i = 0, s = remap.size(); s > i; i++) {
+			int from = remap.getOldId(i);
+			if (previous.length > from) {
+				previous[remap.getNewId(i)] = previous[from];
+				previous[from] = 0;
+			}
+		}
+
+		for (int i = 0, s = subscriptions.size(); s > i; i++) {
+			subscriptions.get(i).relocate(remap);
+		}
+	}
+
+	/** Shrinks per entity state; entities at and above newSize must no longer exist. */
+	void trim(int newSize) {
+		previousIdentities.trim(newSize);
+		for (int i = 0, s = subscriptions.size(); s > i; i++) {
+			subscriptions.get(i).trim(newSize);
+		}
+	}
+
 	void processComponentIdentity(int id, BitVector componentBits) {
 		for (int i = 0, s = subscriptions.size(); s > i; i++) {
 			subscriptions.get(i).processComponentIdentity(id, componentBits);
@@ -4,25 +4,33 @@ import com.artemis.utils.Bag;
 import com.artemis.utils.IntBag;
 
 import com.artemis.utils.BitVector;
+import com.artemis.utils.SummaryBitVector;
 
 public final class BatchChangeProcessor {
 	private final World world;
 	private final AspectSubscriptionManager asm;
 
-	public final BitVector changed = new BitVector();
+	public final BitVector changed = new SummaryBitVector();
 	final WildBag<ComponentRemover> purgatories = new WildBag<ComponentRemover>(ComponentRemover.class);
 
 	// marked for deletion, will be removed for entity subscriptions asap
-	private final BitVector deleted = new BitVector();
+	private final BitVector deleted = new SummaryBitVector();
 
 	// collected deleted entities during this {@link World#process()} round;
 	// cleaned at end of round.
-	private final BitVector pendingPurge = new BitVector();
+	private final BitVector pendingPurge = new SummaryBitVector();
 	private final IntBag toPurge = new IntBag();
 
 	private final Bag<EntityEdit> pool = new Bag<EntityEdit>();
 	private final WildBag<EntityEdit> edited = new WildBag(EntityEdit.class);
 
+	/**
+	 * When set, systems are running concurrently: composition changes
+	 * and deletions are recorded to the calling thread's
+	 * {@link StructuralChanges} instead of being applied.
+	 */
+	StructuralChanges.Source deferral;
+
 	BatchChangeProcessor(World world) {
 		this.world = world;
 		asm = world.getAspectSubscriptionManager();
@@ -33,11 +41,34 @@ public final class BatchChangeProcessor {
 		em.registerEntityStore(pendingPurge);
 	}
 
+	/** @return {@code true} if any changes await the next update. */
+	boolean hasPendingChanges() {
+		return !changed.isEmpty() || !pendingPurge.isEmpty() || !edited.isEmpty() || purgatories.size() > 0;
+	}
+
+	/**
+	 * @return changes of the calling thread, if it must record creating
+	 *         and removing components instead of touching mappers;
+	 *         otherwise {@code null}.
+	 */
+	StructuralChanges componentDeferral() {
+		if (deferral == null)
+			return null;
+
+		StructuralChanges changes = deferral.changes();
+		return changes.recordsComponents ? changes : null;
+	}
+
 	boolean isDeleted(int entityId) {
 		return pendingPurge.unsafeGet(entityId);
 	}
 
 	void delete(int entityId) {
+		if (deferral != null) {
+			deferral.changes().delete(entityId);
+			return;
+		}
+
 		deleted.unsafeSet(entityId);
 		pendingPurge.unsafeSet(entityId);
 
@@ -45,12 +76,35 @@ public final class BatchChangeProcessor {
 		changed.unsafeClear(entityId);
 	}
 
+	void delete(BitVector entityIds) {
+		if (deferral != null) {
+			StructuralChanges changes = deferral.changes();
+			for (int id = entityIds.nextSetBit(0); id >= 0; id = entityIds.nextSetBit(id + 1)) {
+				changes.delete(id);
+			}
+			return;
+		}
+
+		deleted.or(entityIds);
+		pendingPurge.or(entityIds);
+
+		// guarding against previous transmutations
+		changed.andNot(entityIds);
+	}
+
 	/**
 	 * Get entity editor.
 	 * @return a fast albeit verbose editor to perform batch changes to entities.
 	 * @param entityId entity to fetch editor for.
 	 */
 	EntityEdit obtainEditor(int entityId) {
+		if (deferral != null) {
+			// pooled editors are shared between threads
+			EntityEdit edit = new EntityEdit(world);
+			edit.entityId = entityId;
+			return edit;
+		}
+
 		int size = edited.size();
 		if (size != 0 && edited.get(size - 1).getEntityId() == entityId)
 			return edited.get(size - 1);
@@ -71,6 +125,16 @@ public final class BatchChangeProcessor {
 		}
 	}
 
+	void registerPurgatory(ComponentRemover purgatory) {
+		if (deferral != null) {
+			synchronized (purgatories) {
+				purgatories.add(purgatory);
+			}
+		} else {
+			purgatories.add(purgatory);
+		}
+	}
+
 	void update() {
 		while(!changed.isEmpty() || !deleted.isEmpty()) {
 			asm.process(changed, deleted);
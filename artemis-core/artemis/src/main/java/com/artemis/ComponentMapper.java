@@ -1,7 +1,7 @@
 package com.artemis;
 
 import com.artemis.annotations.DelayedComponentRemoval;
-import com.artemis.utils.Bag;
+import com.artemis.annotations.PagedStorage;
 
 import static com.artemis.utils.reflect.ClassReflection.isAnnotationPresent;
 
@@ -19,18 +19,26 @@ public class ComponentMapper<A extends Component> extends BaseComponentMapper<A>
     /**
      * Holds all components of given type in the world.
      */
-    final Bag<A> components;
+    final ComponentStorage<A> components;
     
     protected final EntityTransmuter createTransmuter;
     protected final EntityTransmuter removeTransmuter;
     protected final ComponentPool pool;
     protected final ComponentRemover<A> purgatory;
+    protected final BatchChangeProcessor batchProcessor;
 
 
-    @SuppressWarnings("unchecked")
     public ComponentMapper(Class<A> type, World world) {
+        this(type, world, storage(type, world));
+    }
+
+    /**
+     * @param components storage of component instances, indexed by entity id.
+     */
+    @SuppressWarnings("unchecked")
+    ComponentMapper(Class<A> type, World world, ComponentStorage<A> components) {
         super(world.getComponentManager().typeFactory.getTypeFor(type));
-        components = new Bag<>(type);
+        this.components = components;
 
         pool = (this.type.isPooled)
                 ? new ComponentPool(type)
@@ -41,6 +49,7 @@ public class ComponentMapper<A extends Component> extends BaseComponentMapper<A>
         else
             purgatory = new ImmediateComponentRemover<>(components, pool);
 
+        batchProcessor = world.batchProcessor;
         createTransmuter = new EntityTransmuterFactory(world).add(type).build();
         removeTransmuter = new EntityTransmuterFactory(world).remove(type).build();
     }
@@ -93,11 +102,23 @@ public class ComponentMapper<A extends Component> extends BaseComponentMapper<A>
      * AspectSubscriptions will reflect the changes only AFTER the system finishes processing.
      * <p>
      * Does nothing if already removed.
+     * <p>
+     * Within a {@link com.artemis.ConcurrentChanges} task, removal is recorded and
+     * performed once all tasks are done.
      *
      * @param entityId
      */
     @Override
     public void remove(int entityId) {
+        StructuralChanges changes = batchProcessor.componentDeferral();
+        if (changes != null) {
+            int change = changes.lastChange(this, entityId);
+            if (change != -1 ? changes.created(change) != null : get(entityId) != null)
+                changes.remove(this, entityId);
+
+            return;
+        }
+
         A component = get(entityId);
         if (component != null) {
             removeTransmuter.transmuteNoOperation(entityId);
@@ -115,12 +136,20 @@ public class ComponentMapper<A extends Component> extends BaseComponentMapper<A>
     /**
      * Create component for this entity.
      * Avoids creation if component exists.
+     * <p>
+     * Within a {@link com.artemis.ConcurrentChanges} task, a new component is
+     * instanced - never pooled - and added once all tasks are done. Until then,
+     * {@link #has} and {@link #get} don't see it.
      *
      * @param entityId the entity that should possess the component
      * @return the instance of the component.
      */
     @Override
     public A create(int entityId) {
+        StructuralChanges changes = batchProcessor.componentDeferral();
+        if (changes != null)
+            return deferCreate(entityId, changes);
+
         A component = get(entityId);
         if (component == null || purgatory.unmark(entityId)) {
             // running transmuter first, as it performs som validation
@@ -143,6 +172,63 @@ public class ComponentMapper<A extends Component> extends BaseComponentMapper<A>
         return component;
     }
 
+    private A deferCreate(int entityId, StructuralChanges changes) {
+        int change = changes.lastChange(this, entityId);
+        if (change != -1) {
+            A created = (A) changes.created(change);
+            if (created != null)
+                return created;
+        } else if (has(entityId)) {
+            return get(entityId);
+        }
+
+        A component = (A) ComponentManager.newInstance(type.getType());
+        changes.create(this, entityId, component);
+        return component;
+    }
+
+    /** Replaces the component instance of an existing component. */
+    void replace(int entityId, A component) {
+        components.unsafeSet(entityId, component);
+    }
+
+    void ensureCapacity(int newSize) {
+        components.ensureCapacity(newSize);
+    }
+
+    void trim(int newSize) {
+        components.trim(newSize);
+    }
+
+    /** Moves the component of a relocated entity. */
+    void move(int fromEntityId, int toEntityId) {
+        components.unsafeSet(toEntityId, components.get(fromEntityId));
+        components.unsafeSet(fromEntityId, null);
+    }
+
+    /** Releases any resources held outside of the java heap. */
+    void dispose() {}
+
+    /** @return {@code false} if {@link #get(int)} returns a shared flyweight. */
+    boolean hasInstances() {
+        return true;
+    }
+
+    /** Rejects flyweight access from {@link ConcurrentChanges} tasks, which share the mapper. */
+    void checkConcurrentAccess() {
+        if (batchProcessor.componentDeferral() != null)
+            throw new IllegalStateException("Flyweight " + this + " can't be used by concurrent tasks.");
+    }
+
+    private static <A extends Component> ComponentStorage<A> storage(Class<A> type, World world) {
+        if (isAnnotationPresent(type, PagedStorage.class))
+            return new PagedComponentStorage<>(false);
+        else if (world.adaptiveComponentStorage)
+            return new PagedComponentStorage<>(true);
+        else
+            return new FlatComponentStorage<>();
+    }
+
     protected A createNew() {
         return (A) ((pool != null)
                 ? pool.obtain()
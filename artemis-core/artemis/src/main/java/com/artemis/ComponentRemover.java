@@ -1,12 +1,10 @@
 package com.artemis;
 
-import com.artemis.utils.Bag;
-
 abstract class ComponentRemover<A extends Component> {
 	protected final ComponentPool pool;
-	final Bag<A> components;
+	final ComponentStorage<A> components;
 
-	public ComponentRemover(Bag<A> components, ComponentPool pool) {
+	public ComponentRemover(ComponentStorage<A> components, ComponentPool pool) {
 		this.components = components;
 		this.pool = pool;
 	}
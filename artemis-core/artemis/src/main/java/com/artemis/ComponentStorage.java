@@ -0,0 +1,33 @@
+package com.artemis;
+
+/**
+ * Holds the components of one type, indexed by entity id.
+ *
+ * @param <A> Component type to store.
+ * @see ComponentMapper
+ */
+interface ComponentStorage<A> {
+	/**
+	 * @param entityId entity id, within capacity.
+	 * @return the component, or {@code null} if none.
+	 */
+	A get(int entityId);
+
+	/**
+	 * @param entityId entity id, within capacity.
+	 * @param component the component, or {@code null} to clear.
+	 */
+	void unsafeSet(int entityId, A component);
+
+	/** Grows the storage to hold a component for the entity id. */
+	void ensureCapacity(int entityId);
+
+	/**
+	 * Shrinks the storage to the given number of entity ids, if larger.
+	 * Components beyond are discarded.
+	 */
+	void trim(int capacity);
+
+	/** @return number of entity ids the storage holds. */
+	int getCapacity();
+}
@@ -0,0 +1,102 @@
+package com.artemis;
+
+import java.util.Arrays;
+
+/**
+ * Caches, per pair of composition ids, which subscriptions change their
+ * interest when an entity moves from one composition to the other.
+ * <p>
+ * Similar to the operation cache of {@link EntityTransmuter}, but keyed on
+ * both ends of the transition: an entity may pass through any number of
+ * transmuters and edits between two subscription updates, only the
+ * compositions before and after matter.
+ * </p>
+ *
+ * @see AspectSubscriptionManager
+ */
+final class CompositionTransitions {
+	private static final long EMPTY = -1L;
+
+	private long[] keys;
+	private int[][] values;
+	private int mask;
+	private int size;
+
+	CompositionTransitions() {
+		allocate(64);
+	}
+
+	/**
+	 * @param from non-negative composition key.
+	 * @param to non-negative composition key.
+	 * @return cached subscription indices, or {@code null} if not cached.
+	 */
+	int[] get(int from, int to) {
+		long key = key(from, to);
+		for (int i = slot(key); ; i = (i + 1) & mask) {
+			long k = keys[i];
+			if (k == key)
+				return values[i];
+			if (k == EMPTY)
+				return null;
+		}
+	}
+
+	void put(int from, int to, int[] subscriptions) {
+		if ((size + 1) * 2 > keys.length)
+			rehash(keys.length * 2);
+
+		insert(key(from, to), subscriptions);
+	}
+
+	/** Discards all transitions, required whenever the subscriptions change. */
+	void clear() {
+		Arrays.fill(keys, EMPTY);
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	private void insert(long key, int[] subscriptions) {
+		int i = slot(key);
+		while (keys[i] != EMPTY && keys[i] != key)
+			i = (i + 1) & mask;
+
+		if (keys[i] == EMPTY)
+			size++;
+
+		keys[i] = key;
+		values[i] = subscriptions;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[][] oldValues = values;
+
+		allocate(capacity);
+		for (int i = 0; oldKeys.length > i; i++) {
+			if (oldKeys[i] != EMPTY)
+				insert(oldKeys[i], oldValues[i]);
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity][];
+		mask = capacity - 1;
+		size = 0;
+		Arrays.fill(keys, EMPTY);
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9e3779b97f4a7c15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	private static long key(int from, int to) {
+		return ((long) from << 32) | (to & 0xffffffffL);
+	}
+}
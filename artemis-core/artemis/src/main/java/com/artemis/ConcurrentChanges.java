@@ -0,0 +1,103 @@
+package com.artemis;
+
+import com.artemis.annotations.UnstableApi;
+import com.artemis.utils.Bag;
+
+/**
+ * Lets a system split its work into tasks running on other threads.
+ * <p>
+ * Structural changes made by each task - creating or removing components,
+ * transmuting or deleting entities - are recorded separately, and merged
+ * in task order once all tasks are done: applied to the world directly,
+ * or - when the system itself runs concurrently under
+ * {@link ParallelInvocationStrategy} - handed to the system's own changes.
+ * Entities can't be created from tasks.
+ * </p>
+ * <pre>
+ * changes.begin(n);
+ * try {
+ *     // on any thread, for each task i in [0, n):
+ *     changes.run(i, task);
+ * } finally {
+ *     changes.end();
+ * }
+ * </pre>
+ *
+ * @see com.artemis.systems.ParallelIteratingSystem
+ */
+@UnstableApi
+public final class ConcurrentChanges {
+	private final BatchChangeProcessor batchProcessor;
+	private final World world;
+
+	private final Bag<StructuralChanges> tasks = new Bag<StructuralChanges>(StructuralChanges.class);
+	private final ThreadLocalChanges own = new ThreadLocalChanges();
+
+	private ThreadLocalChanges active;
+	private int taskCount;
+
+	public ConcurrentChanges(World world) {
+		this.world = world;
+		batchProcessor = world.batchProcessor;
+	}
+
+	/**
+	 * Starts deferring structural changes. Call before starting any tasks,
+	 * on the thread running the system.
+	 *
+	 * @param taskCount number of tasks.
+	 */
+	public void begin(int taskCount) {
+		if (active != null)
+			throw new IllegalStateException("Already started.");
+
+		for (int i = tasks.size(); taskCount > i; i++) {
+			tasks.add(new StructuralChanges(true));
+		}
+		this.taskCount = taskCount;
+
+		if (batchProcessor.deferral == null) {
+			batchProcessor.deferral = own;
+			active = own;
+		} else if (batchProcessor.deferral instanceof ThreadLocalChanges) {
+			active = (ThreadLocalChanges) batchProcessor.deferral;
+		} else {
+			throw new IllegalStateException("Unsupported deferral: " + batchProcessor.deferral);
+		}
+	}
+
+	/**
+	 * Runs a task on the calling thread, recording its structural changes.
+	 *
+	 * @param index index of task, in {@code [0, taskCount)}.
+	 * @param task work to run.
+	 */
+	public void run(int index, Runnable task) {
+		StructuralChanges previous = active.bind(tasks.get(index));
+		try {
+			task.run();
+		} finally {
+			active.bind(previous);
+		}
+	}
+
+	/**
+	 * Merges the changes of all tasks, in task order. Call once all tasks
+	 * are done, on the thread that called {@link #begin(int)}.
+	 */
+	public void end() {
+		if (active == own) {
+			batchProcessor.deferral = null;
+			for (int i = 0; taskCount > i; i++) {
+				tasks.get(i).apply(world);
+			}
+		} else {
+			StructuralChanges changes = active.changes();
+			for (int i = 0; taskCount > i; i++) {
+				changes.drainFrom(tasks.get(i));
+			}
+		}
+
+		active = null;
+	}
+}
@@ -1,14 +1,13 @@
 package com.artemis;
 
-import com.artemis.utils.Bag;
-
 import com.artemis.utils.BitVector;
+import com.artemis.utils.SummaryBitVector;
 
 class DelayedComponentRemover<A extends Component> extends ComponentRemover<A> {
-	final BitVector idBits = new BitVector();
+	final BitVector idBits = new SummaryBitVector();
 	final BatchChangeProcessor batchProcessor;
 
-	DelayedComponentRemover(Bag<A> components, ComponentPool pool, BatchChangeProcessor batchProcessor) {
+	DelayedComponentRemover(ComponentStorage<A> components, ComponentPool pool, BatchChangeProcessor batchProcessor) {
 		super(components, pool);
 		this.batchProcessor = batchProcessor;
 	}
@@ -16,7 +15,7 @@ class DelayedComponentRemover<A extends Component> extends ComponentRemover<A> {
 	@Override
 	void mark(int entityId) {
 		if (idBits.isEmpty()) // see cm#clean
-			batchProcessor.purgatories.add(this);
+			batchProcessor.registerPurgatory(this);
 
 		idBits.set(entityId);
 	}
@@ -23,9 +23,11 @@ public final class EntityEdit {
 
 	int entityId;
 	private ComponentManager cm;
+	private final BatchChangeProcessor batchProcessor;
 
 	EntityEdit(World world) {
 		cm = world.getComponentManager();
+		batchProcessor = world.batchProcessor;
 	}
 
 	/**
@@ -71,8 +73,14 @@ public final class EntityEdit {
 
 		ComponentMapper mapper = cm.getMapper(type.getType());
 
+		StructuralChanges changes = batchProcessor.componentDeferral();
+		if (changes != null) {
+			changes.create(mapper, entityId, component);
+			return this;
+		}
+
 		mapper.create(entityId);
-		mapper.components.getData()[entityId] =  component;
+		mapper.replace(entityId, component);
 
 		return this;
 	}
@@ -3,7 +3,7 @@ package com.artemis;
 import com.artemis.annotations.SkipWire;
 import com.artemis.utils.Bag;
 import com.artemis.utils.IntBag;
-import com.artemis.utils.IntDeque;
+import com.artemis.utils.IntLinkedQueue;
 
 import com.artemis.utils.BitVector;
 
@@ -18,13 +18,34 @@ import static com.artemis.Aspect.all;
 @SkipWire
 public class EntityManager extends BaseSystem {
 	private final BitVector recycled = new BitVector();
-	private final IntDeque limbo = new IntDeque();
+	private final IntLinkedQueue limbo = new IntLinkedQueue();
+	private final int minSize;
 	private int maxSize;
 	private int nextID;
+	/** Consecutive frames with few enough entities to shrink, see {@link #autoTrim(int)}. */
+	private int idleFrames;
+	/** Id range in use and capacity after the last {@link #compact()}. */
+	private int compactedTop = -1;
+	private int compactedSize = -1;
 	private Bag<BitVector> entityBitVectors = new Bag<BitVector>(BitVector.class);
 
+	/** Bumped each time an id is freed; {@code null} unless tracking generations. */
+	private final IntBag generations;
+
 	protected EntityManager(int initialContainerSize) {
+		this(initialContainerSize, false);
+	}
+
+	/**
+	 * @param initialContainerSize initial capacity of entity stores.
+	 * @param trackGenerations {@code true} to count how many times each id has
+	 *                         been recycled, enabling {@link #handle(int)}.
+	 * @see WorldConfiguration#setTrackEntityGenerations(boolean)
+	 */
+	protected EntityManager(int initialContainerSize, boolean trackGenerations) {
+		minSize = Math.max(1, initialContainerSize);
 		maxSize = initialContainerSize;
+		generations = trackGenerations ? new IntBag(initialContainerSize) : null;
 		registerEntityStore(recycled);
 	}
 
@@ -35,6 +56,38 @@ public class EntityManager extends BaseSystem {
 		return obtain();
 	}
 	
+	/**
+	 * Creates several entities at once. Recycled ids are handed out first;
+	 * any remaining ids are allocated as a single contiguous range.
+	 *
+	 * @param count number of entities to create.
+	 * @param out new entity ids are appended here; recycled ids first,
+	 *            followed by the contiguous range of new ids.
+	 * @return number of recycled ids appended to {@code out}.
+	 */
+	protected int create(int count, IntBag out) {
+		out.ensureCapacity(out.size() + count);
+
+		int recycledCount = Math.min(count, limbo.size());
+		for (int i = 0; recycledCount > i; i++) {
+			out.add(obtain());
+		}
+
+		int from = nextID;
+		int to = from + (count - recycledCount);
+		if (to > maxSize) {
+			maxSize = getNextPowerOfTwo(to);
+			growEntityStores();
+		}
+
+		for (int id = from; to > id; id++) {
+			out.add(id);
+		}
+
+		nextID = to;
+		return recycledCount;
+	}
+
 	public int getNextID() {
 		return nextID;
 	}
@@ -72,11 +125,86 @@ public class EntityManager extends BaseSystem {
 		return recycled.unsafeGet(entityID);
 	}
 
+	/**
+	 * @return {@code true} if generations are tracked, enabling {@link #handle(int)}.
+	 */
+	public boolean isTrackingGenerations() {
+		return generations != null;
+	}
+
+	/**
+	 * Number of times the entity id has been freed; only tracked
+	 * when enabled by {@link WorldConfiguration#setTrackEntityGenerations(boolean)}.
+	 *
+	 * @param entityID the entity id
+	 * @return generation of the id.
+	 */
+	public int getGeneration(int entityID) {
+		assertTrackingGenerations();
+		return generations.unsafeGet(entityID);
+	}
+
+	/**
+	 * Packs the entity id together with its current generation. Unlike
+	 * the raw id, the handle can safely be held across frames: once the
+	 * entity is deleted, {@link #resolve(long)} rejects the handle, even
+	 * if the id has since been recycled.
+	 *
+	 * @param entityID an active entity.
+	 * @return handle uniquely identifying this incarnation of the entity id.
+	 * @see #resolve(long)
+	 */
+	public long handle(int entityID) {
+		assertTrackingGenerations();
+		return ((long) generations.unsafeGet(entityID) << 32) | (entityID & 0xffffffffL);
+	}
+
+	/**
+	 * Validates a handle obtained from {@link #handle(int)}.
+	 *
+	 * Handles are invalidated once the entity is removed from the world,
+	 * at the end of the {@link World#process()} during which it was deleted.
+	 *
+	 * @param handle entity handle.
+	 * @return entity id, or {@code -1} if the entity no longer exists.
+	 */
+	public int resolve(long handle) {
+		assertTrackingGenerations();
+		int entityID = (int) handle;
+		if (entityID < 0 || entityID >= nextID)
+			return -1;
+
+		return (generations.unsafeGet(entityID) == (int) (handle >>> 32)) ? entityID : -1;
+	}
+
+	private void assertTrackingGenerations() {
+		if (generations == null)
+			throw new IllegalStateException("Entity generations not tracked; " +
+				"see WorldConfiguration#setTrackEntityGenerations.");
+	}
+
 	public void registerEntityStore(BitVector bv) {
 		bv.ensureCapacity(maxSize);
 		entityBitVectors.add(bv);
 	}
 
+	/**
+	 * Stops growing and trimming a previously registered entity store.
+	 *
+	 * @param bv registered entity store.
+	 * @return {@code true} if the store was registered.
+	 */
+	public boolean unregisterEntityStore(BitVector bv) {
+		for (int i = 0, s = entityBitVectors.size(); s > i; i++) {
+			// by identity; equal contents don't make equal stores
+			if (entityBitVectors.get(i) == bv) {
+				entityBitVectors.remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * <p>If all entties have been deleted, resets the entity cache - with next entity
 	 * entity receiving id <code>0</code>. There mustn't be any active entities in
@@ -101,6 +229,108 @@ public class EntityManager extends BaseSystem {
 		return true;
 	}
 	
+	/**
+	 * Releases the free entity ids above the highest id in use, and
+	 * shrinks all entity stores - component mappers, composition ids and
+	 * entity bitsets, including those of subscriptions - to twice the
+	 * remaining range, but no less than the initial capacity.
+	 * <p>
+	 * Only ids at the top of the range are released; a single long lived
+	 * entity with a high id keeps the stores from shrinking. Generations
+	 * are kept for all ids, so handles to released ids stay invalid.
+	 * </p>
+	 * <p>
+	 * Must not be called while the world is processing.
+	 * </p>
+	 *
+	 * @return {@code true} if the entity stores were shrunk.
+	 * @see World#trim()
+	 */
+	public boolean compact() {
+		int top = top();
+		for (int id = top; nextID > id; id++) {
+			limbo.remove(id);
+			recycled.unsafeClear(id);
+		}
+		nextID = top;
+
+		int capacity = Math.max(minSize, getNextPowerOfTwo(Math.max(1, 2 * top)));
+		boolean shrunk = capacity < maxSize;
+		if (shrunk) {
+			maxSize = capacity;
+			trimEntityStores();
+		}
+
+		compactedTop = top;
+		compactedSize = maxSize;
+		return shrunk;
+	}
+
+	/** @return highest entity id in use, plus one. */
+	private int top() {
+		int top = nextID;
+		while (top > 0 && recycled.unsafeGet(top - 1)) {
+			top--;
+		}
+		return top;
+	}
+
+	/**
+	 * Moves the highest entity ids in use into the lowest free ids, until
+	 * all entities occupy a contiguous range starting at {@code 0}. Only
+	 * updates the entity manager's own state; see {@link World#defragment()}.
+	 *
+	 * @return relocated entities.
+	 */
+	EntityRemap defragment() {
+		EntityRemap remap = new EntityRemap();
+		int free = 0;
+		int used = nextID - 1;
+		while (true) {
+			while (used > free && !recycled.unsafeGet(free)) {
+				free++;
+			}
+			while (used > free && recycled.unsafeGet(used)) {
+				used--;
+			}
+			if (free >= used)
+				break;
+
+			remap.add(used, free);
+			limbo.remove(free);
+			recycled.unsafeClear(free);
+
+			limbo.add(used);
+			recycled.unsafeSet(used);
+			if (generations != null)
+				generations.unsafeSet(used, generations.unsafeGet(used) + 1);
+
+			free++;
+			used--;
+		}
+
+		return remap;
+	}
+
+	/**
+	 * Compacts once no more than a quarter of the capacity has been in use
+	 * for {@code frames} consecutive frames. Compacting leaves at least
+	 * half of the capacity unused, so stores don't shrink and grow on
+	 * alternate frames. Skipped while neither the highest id in use nor
+	 * the capacity changed since the last compaction.
+	 *
+	 * @param frames consecutive frames with low usage before compacting.
+	 */
+	void autoTrim(int frames) {
+		if (maxSize <= minSize || 4 * (nextID - limbo.size()) > maxSize) {
+			idleFrames = 0;
+		} else if (++idleFrames >= frames) {
+			idleFrames = 0;
+			if (top() != compactedTop || maxSize != compactedSize)
+				compact();
+		}
+	}
+
 	int getNextPowerOfTwo(int value) {
 		int highestOneBit = Integer.highestOneBit(value);
 		if (value == highestOneBit) {
@@ -121,7 +351,7 @@ public class EntityManager extends BaseSystem {
 			
 		} else if (isDeleted(entityID)) {
 			recycled.unsafeClear(entityID);
-			limbo.removeValue(entityID);
+			limbo.remove(entityID);
 			
 		} else {
 			throw new IllegalStateException("entityID " + entityID + " is already in use");
@@ -143,12 +373,29 @@ public class EntityManager extends BaseSystem {
 	private void growEntityStores() {
 		ComponentManager cm = world.getComponentManager();
 		cm.ensureCapacity(maxSize);
+		if (generations != null)
+			generations.ensureCapacity(maxSize);
 
 		for (int i = 0, s = entityBitVectors.size(); s > i; i++) {
 			entityBitVectors.get(i).ensureCapacity(maxSize);
 		}
 	}
 
+	private void trimEntityStores() {
+		world.getComponentManager().trim(maxSize);
+		world.getAspectSubscriptionManager().trim(maxSize);
+		limbo.trim(maxSize);
+
+		for (int i = 0, s = entityBitVectors.size(); s > i; i++) {
+			entityBitVectors.get(i).trim(maxSize);
+		}
+	}
+
+	/** @return number of entities the entity stores hold without growing. */
+	int getCapacity() {
+		return maxSize;
+	}
+
 	private int obtain() {
 		if (limbo.isEmpty()) {
 			return createEntity();
@@ -166,5 +413,7 @@ public class EntityManager extends BaseSystem {
 		
 		limbo.add(entityID);
 		recycled.unsafeSet(entityID);
+		if (generations != null)
+			generations.unsafeSet(entityID, generations.unsafeGet(entityID) + 1);
 	}
 }
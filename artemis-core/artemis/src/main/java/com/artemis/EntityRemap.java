@@ -0,0 +1,84 @@
+package com.artemis;
+
+import com.artemis.utils.IntBag;
+
+/**
+ * Entity ids relocated by {@link World#defragment()}.
+ * <p>
+ * Anything holding on to entity ids outside of components' {@link
+ * com.artemis.annotations.EntityId} fields must translate them through
+ * {@link #get(int)}, or be registered as a system implementing
+ * {@link Listener}.
+ * </p>
+ */
+public final class EntityRemap {
+	private final IntBag oldIds = new IntBag();
+	private final IntBag newIds = new IntBag();
+	/** New id by old id, offset by one; {@code 0} if not moved. */
+	private final IntBag oldToNew = new IntBag();
+
+	EntityRemap() {}
+
+	void add(int oldId, int newId) {
+		oldIds.add(oldId);
+		newIds.add(newId);
+		oldToNew.set(oldId, newId + 1);
+	}
+
+	/**
+	 * @param entityId id before defragmenting.
+	 * @return current id of the entity; unmoved ids are returned as is.
+	 */
+	public int get(int entityId) {
+		return (entityId >= 0 && oldToNew.size() > entityId && oldToNew.get(entityId) != 0)
+			? oldToNew.get(entityId) - 1
+			: entityId;
+	}
+
+	/**
+	 * Translates all ids in place.
+	 *
+	 * @param entityIds ids before defragmenting.
+	 */
+	public void remap(IntBag entityIds) {
+		int[] ids = entityIds.getData();
+		for (int i = 0, s = entityIds.size(); s > i; i++) {
+			ids[i] = get(ids[i]);
+		}
+	}
+
+	/** @return number of relocated entities. */
+	public int size() {
+		return oldIds.size();
+	}
+
+	/**
+	 * @param index relocation, in {@code [0, size())}.
+	 * @return id before defragmenting.
+	 */
+	public int getOldId(int index) {
+		return oldIds.get(index);
+	}
+
+	/**
+	 * @param index relocation, in {@code [0, size())}.
+	 * @return id after defragmenting.
+	 */
+	public int getNewId(int index) {
+		return newIds.get(index);
+	}
+
+	/**
+	 * Implemented by systems keeping track of entity ids, to be informed
+	 * when entities are relocated.
+	 */
+	public interface Listener {
+		/**
+		 * Called after components and subscriptions have been relocated,
+		 * before {@link World#defragment()} returns.
+		 *
+		 * @param remap relocated entities.
+		 */
+		void remapped(EntityRemap remap);
+	}
+}
@@ -5,6 +5,8 @@ import com.artemis.utils.Bag;
 import com.artemis.utils.BitVector;
 import com.artemis.utils.IntBag;
 
+import java.util.Arrays;
+
 /**
  * Maintains the list of entities matched by an aspect. Entity subscriptions
  * are automatically updated during {@link com.artemis.World#process()}.
@@ -22,34 +24,43 @@ public class EntitySubscription {
     private int entityCount;
     private final IntBag entities;
     private final BitVector activeEntityIds;
-    
-    private final BitVector insertedIds;
-    private final BitVector removedIds;
+    /** Position of each entity in {@link #entities}, only when maintained incrementally. */
+    private IntBag entityIndices;
+    /** Scratch for sorting {@link #entities}, only when grouped by composition. */
+    private IntBag grouped;
+    private int[] compositionOffsets;
+    private final ComponentManager cm;
     
     final Aspect aspect;
     final Aspect.Builder aspectReflection;
     final BitVector aspectCache = new BitVector();
     
+    /**
+     * Entities inserted and removed since listeners were last informed.
+     * Change lists rather than entity sized bitsets, as they are usually
+     * empty or short; each entity appears at most once per update.
+     */
     final IntBag inserted = new IntBag();
     final IntBag removed = new IntBag();
     
     final Bag<SubscriptionListener> listeners = new Bag<>();
+
+    /** Number of unreleased {@link AspectSubscriptionManager#acquire acquisitions}. */
+    int references;
+    /** Obtained through {@link AspectSubscriptionManager#get}; never released. */
+    boolean permanent;
+    private boolean released;
     
     EntitySubscription(World world, Aspect.Builder builder) {
         
         aspect = builder.build(world);
         aspectReflection = builder;
+        cm = world.getComponentManager();
         
         activeEntityIds = new BitVector();
         entities = new IntBag();
         
-        insertedIds = new BitVector();
-        removedIds = new BitVector();
-        
-        EntityManager em = world.getEntityManager();
-        em.registerEntityStore(activeEntityIds);
-        em.registerEntityStore(insertedIds);
-        em.registerEntityStore(removedIds);
+        world.getEntityManager().registerEntityStore(activeEntityIds);
     }
     
     public int getEntityCount() {
@@ -62,6 +73,12 @@ public class EntitySubscription {
      * <b>Warning: </b> Never remove elements from the bag, as this will lead to undefined behavior.
      * </p>
      *
+     * <p>
+     * Entities are ordered by id, unless the subscription
+     * {@link #setIncrementalEntities(boolean) maintains entities incrementally}
+     * or {@link #setGroupedByComposition(boolean) groups them by composition}.
+     * </p>
+     *
      * @return View of all active entities.
      */
     public IntBag getEntities() {
@@ -72,6 +89,92 @@ public class EntitySubscription {
         return entities;
     }
     
+    /**
+     * Keep {@link #getEntities()} up to date entity by entity, instead of
+     * rebuilding it from {@link #getActiveEntityIds()} after every change.
+     * Pays off for large subscriptions with few changes per update.
+     * <p>
+     * Ordering contract: entities are no longer ordered by id. Inserted
+     * entities are appended; a removed entity is replaced by the last
+     * entity in the bag. The order is otherwise stable between updates.
+     * </p>
+     *
+     * @param incremental {@code true} to maintain entities incrementally,
+     *                    {@code false} to rebuild them ordered by id.
+     * @return this subscription.
+     */
+    public EntitySubscription setIncrementalEntities(boolean incremental) {
+        if (incremental == isIncrementalEntities())
+            return this;
+        if (incremental && isGroupedByComposition())
+            throw new IllegalStateException("Entities grouped by composition can't be maintained incrementally.");
+
+        entityIndices = incremental ? new IntBag() : null;
+        rebuildCompressedActives();
+        return this;
+    }
+
+    /**
+     * @return {@code true} if entities are maintained incrementally.
+     * @see #setIncrementalEntities(boolean)
+     */
+    public boolean isIncrementalEntities() {
+        return entityIndices != null;
+    }
+
+    /**
+     * Order {@link #getEntities()} by composition id, then by entity id,
+     * so that entities sharing the same components are processed together.
+     * Combined with component storage laid out per composition, this keeps
+     * iteration over mixed compositions local.
+     * <p>
+     * Ordering contract: grouping is applied whenever the entities are
+     * rebuilt, after entities are inserted or removed. An entity changing
+     * composition while remaining in the subscription keeps its position
+     * until the next rebuild.
+     * </p>
+     *
+     * @param grouped {@code true} to group entities by composition,
+     *                {@code false} to order them by id.
+     * @return this subscription.
+     * @throws IllegalStateException if entities are maintained incrementally.
+     */
+    public EntitySubscription setGroupedByComposition(boolean grouped) {
+        if (grouped == isGroupedByComposition())
+            return this;
+        if (grouped && isIncrementalEntities())
+            throw new IllegalStateException("Incrementally maintained entities can't be grouped by composition.");
+
+        this.grouped = grouped ? new IntBag() : null;
+        compositionOffsets = grouped ? new int[0] : null;
+        entities.setSize(0);
+        return this;
+    }
+
+    /**
+     * @return {@code true} if entities are grouped by composition.
+     * @see #setGroupedByComposition(boolean)
+     */
+    public boolean isGroupedByComposition() {
+        return grouped != null;
+    }
+
+    /**
+     * @return {@code true} if the subscription has been released, and
+     *         is no longer updated.
+     * @see AspectSubscriptionManager#release(EntitySubscription)
+     */
+    public boolean isReleased() {
+        return released;
+    }
+
+    /** Stops tracking entities; the subscription is no longer updated. */
+    void release(EntityManager em) {
+        em.unregisterEntityStore(activeEntityIds);
+        listeners.clear();
+        released = true;
+    }
+
     /**
      * Returns the bitset tracking all matched entities.
      * <p>
@@ -108,6 +211,44 @@ public class EntitySubscription {
     
     void rebuildCompressedActives() {
         activeEntityIds.toIntBag(entities);
+        if (grouped != null)
+            groupByComposition();
+
+        if (entityIndices != null) {
+            int[] ids = entities.getData();
+            for (int i = 0, s = entities.size(); s > i; i++) {
+                entityIndices.set(ids[i], i);
+            }
+        }
+    }
+    
+    /** Stable counting sort of {@link #entities} by composition id. */
+    private void groupByComposition() {
+        int[] ids = entities.getData();
+        int size = entities.size();
+
+        int compositionCount = cm.identityResolver.compositionBits.size();
+        int[] offsets = compositionOffsets;
+        if (compositionCount + 1 > offsets.length) {
+            offsets = compositionOffsets = new int[compositionCount + 1];
+        } else {
+            Arrays.fill(offsets, 0, compositionCount + 1, 0);
+        }
+
+        for (int i = 0; size > i; i++) {
+            offsets[cm.getIdentity(ids[i]) + 1]++;
+        }
+        for (int i = 1; compositionCount > i; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+
+        grouped.ensureCapacity(size);
+        int[] sorted = grouped.getData();
+        for (int i = 0; size > i; i++) {
+            int id = ids[i];
+            sorted[offsets[cm.getIdentity(id)]++] = id;
+        }
+        System.arraycopy(sorted, 0, ids, 0, size);
     }
     
     final void check(int id, int cid) {
@@ -121,18 +262,69 @@ public class EntitySubscription {
         }
     }
     
+    /** Removes the entity if it is a member, regardless of composition. */
+    final void removeIfActive(int id) {
+        if (activeEntityIds.unsafeGet(id)) {
+            remove(id);
+        }
+    }
+    
     private void remove(int entityId) {
         activeEntityIds.unsafeClear(entityId);
-        removedIds.unsafeSet(entityId);
+        removed.add(entityId);
         entityCount--;
+        if (entityIndices != null) unlist(entityId);
     }
     
     private void insert(int entityId) {
         activeEntityIds.unsafeSet(entityId);
-        insertedIds.unsafeSet(entityId);
+        inserted.add(entityId);
         entityCount++;
+        if (entityIndices != null) list(entityId);
+    }
+    
+    private void list(int entityId) {
+        entityIndices.set(entityId, entities.size());
+        entities.add(entityId);
+    }
+    
+    private void unlist(int entityId) {
+        int index = entityIndices.unsafeGet(entityId);
+        entities.removeIndex(index);
+        if (entities.size() > index) {
+            entityIndices.unsafeSet(entities.unsafeGet(index), index);
+        }
     }
     
+    /** Moves relocated member entities, without informing listeners. */
+    void relocate(EntityRemap remap) {
+        boolean moved = false;
+        for (int i = 0, s = remap.size(); s > i; i++) {
+            int from = remap.getOldId(i);
+            if (!activeEntityIds.unsafeGet(from))
+                continue;
+
+            int to = remap.getNewId(i);
+            activeEntityIds.unsafeClear(from);
+            activeEntityIds.unsafeSet(to);
+            if (entityIndices != null) {
+                int index = entityIndices.unsafeGet(from);
+                entities.set(index, to);
+                entityIndices.set(to, index);
+            }
+            moved = true;
+        }
+
+        if (moved && entityIndices == null)
+            entities.setSize(0);
+    }
+
+    /** Shrinks per entity state; entities at and above newSize must no longer exist. */
+    void trim(int newSize) {
+        if (entityIndices != null)
+            entityIndices.trim(newSize);
+    }
+
     void process(IntBag changed, IntBag deleted) {
         deleted(deleted);
         changed(changed);
@@ -147,12 +339,35 @@ public class EntitySubscription {
         informEntityChanges();
     }
     
+    /**
+     * Same as {@link #process(IntBag, IntBag)}, but applies changes
+     * 64 entities at a time. Faster when changes are dense.
+     */
+    void processWords(IntBag changed, IntBag deleted) {
+        deleted(deleted);
+        changedWords(changed);
+        
+        informEntityChanges();
+    }
+    
+    /**
+     * Same as {@link #processAll(IntBag, IntBag)}, but applies changes
+     * 64 entities at a time. Faster when changes are dense.
+     */
+    void processAllWords(IntBag changed, IntBag deleted) {
+        deletedAll(deleted);
+        changedWords(changed);
+        
+        informEntityChanges();
+    }
+    
     void informEntityChanges() {
-        if (insertedIds.isEmpty() && removedIds.isEmpty()) return;
+        if (inserted.isEmpty() && removed.isEmpty()) return;
         
         if (!listeners.isEmpty()) {
             
-            transferBitsToInts(inserted, removed);
+            sort(inserted);
+            sort(removed);
             
             for (int i = 0, s = listeners.size(); s > i; i++) {
                 SubscriptionListener listener = listeners.get(i);
@@ -164,23 +379,28 @@ public class EntitySubscription {
                     listener.inserted(inserted);
                 }
             }
-            
-        } else {
-            
-            insertedIds.clear();
-            removedIds.clear();
         }
         
         removed.setSize(0);
         inserted.setSize(0);
-        entities.setSize(0);
+        if (entityIndices == null) {
+            entities.setSize(0);
+        }
     }
     
-    private void transferBitsToInts(IntBag inserted, IntBag removed) {
-        insertedIds.toIntBag(inserted);
-        removedIds.toIntBag(removed);
-        insertedIds.clear();
-        removedIds.clear();
+    /**
+     * Listeners receive entities ordered by id. Each phase of an update -
+     * deletions, then composition changes - appends in id order, so the
+     * lists are typically sorted already.
+     */
+    private static void sort(IntBag entities) {
+        int[] ids = entities.getData();
+        for (int i = 1, s = entities.size(); s > i; i++) {
+            if (ids[i - 1] > ids[i]) {
+                Arrays.sort(ids, 0, s);
+                return;
+            }
+        }
     }
     
     private void changed(IntBag entitiesWithCompositions) {
@@ -198,6 +418,53 @@ public class EntitySubscription {
         }
     }
     
+    /**
+     * Branch-free variant of {@link #changed(IntBag)}: for each word of
+     * entity ids, builds masks of changed and interested entities, from
+     * which inserted and removed entities fall out as bitwise operations.
+     *
+     * @param entitiesWithCompositions pairs of entity id and composition id,
+     *                                 sorted by entity id.
+     */
+    private void changedWords(IntBag entitiesWithCompositions) {
+        int[] ids = entitiesWithCompositions.getData();
+        for (int i = 0, s = entitiesWithCompositions.size(); s > i; ) {
+            int word = ids[i] >>> 6;
+            long changedBits = 0L;
+            long interestedBits = 0L;
+            do {
+                int id = ids[i];
+                int cid = ids[i + 1];
+                changedBits |= 1L << id;
+                interestedBits |= ((aspectCache.unsafeGetWord(cid >>> 6) >>> cid) & 1L) << id;
+                i += 2;
+            } while (s > i && (ids[i] >>> 6) == word);
+            
+            long active = activeEntityIds.unsafeGetWord(word);
+            long insertedBits = interestedBits & ~active;
+            long removedBits = active & changedBits & ~interestedBits;
+            if ((insertedBits | removedBits) != 0L) {
+                activeEntityIds.unsafeSetWord(word, active ^ insertedBits ^ removedBits);
+                entityCount += Long.bitCount(insertedBits) - Long.bitCount(removedBits);
+                listWord(word, insertedBits, removedBits);
+            }
+        }
+    }
+    
+    private void listWord(int word, long insertedBits, long removedBits) {
+        int offset = word << 6;
+        for (long bits = removedBits; bits != 0L; bits &= bits - 1) {
+            int id = offset + Long.numberOfTrailingZeros(bits);
+            removed.add(id);
+            if (entityIndices != null) unlist(id);
+        }
+        for (long bits = insertedBits; bits != 0L; bits &= bits - 1) {
+            int id = offset + Long.numberOfTrailingZeros(bits);
+            inserted.add(id);
+            if (entityIndices != null) list(id);
+        }
+    }
+    
     private void deleted(IntBag entities) {
         int[] ids = entities.getData();
         for (int i = 0, s = entities.size(); s > i; i++) {
@@ -209,13 +476,16 @@ public class EntitySubscription {
     }
     
     // Special for Aspect.All subscription
-    private void deletedAll(IntBag entities) {
+    void deletedAll(IntBag entities) {
         int[] ids = entities.getData();
         for (int i = 0, s = entities.size(); s > i; i++) {
             int id = ids[i];
-            activeEntityIds.unsafeClear(id);
-            removedIds.unsafeSet(id);
-            entityCount--;
+            if (activeEntityIds.unsafeGet(id)) {
+                activeEntityIds.unsafeClear(id);
+                entityCount--;
+                if (entityIndices != null) unlist(id);
+            }
+            removed.add(id);
         }
     }
     
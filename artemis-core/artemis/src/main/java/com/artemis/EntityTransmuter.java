@@ -1,7 +1,6 @@
 package com.artemis;
 
 import com.artemis.utils.Bag;
-import com.artemis.utils.ShortBag;
 
 import com.artemis.utils.BitVector;
 
@@ -24,7 +23,7 @@ public final class EntityTransmuter {
 	private final BatchChangeProcessor batchProcessor;
 	private final Bag<TransmuteOperation> operations;
 
-	private final ShortBag entityToIdentity;
+	private final ComponentManager cm;
 
 	public EntityTransmuter(World world, Aspect.Builder aspect) {
 		this(world, world.getAspectSubscriptionManager().get(aspect).getAspect());
@@ -36,7 +35,7 @@ public final class EntityTransmuter {
 
 	EntityTransmuter(World world, BitVector additions, BitVector removals) {
 		em = world.getEntityManager();
-		entityToIdentity = world.getComponentManager().entityToIdentity;
+		cm = world.getComponentManager();
 		batchProcessor = world.batchProcessor;
 		operations = new Bag<TransmuteOperation>(TransmuteOperation.class);
 
@@ -53,18 +52,28 @@ public final class EntityTransmuter {
 	 * @param entityId target entity id
 	 */
 	public void transmute(int entityId) {
+		if (batchProcessor.deferral != null) {
+			batchProcessor.deferral.changes().transmute(this, entityId);
+			return;
+		}
+
 		if (!isValid(entityId)) return;
 
 		TransmuteOperation operation = getOperation(entityId);
 		operation.perform(entityId);
-		entityToIdentity.unsafeSet(entityId, operation.compositionId);
+		cm.setIdentity(entityId, operation.compositionId);
 	}
 
 	void transmuteNoOperation(int entityId) {
+		if (batchProcessor.deferral != null) {
+			batchProcessor.deferral.changes().transmuteNoOperation(this, entityId);
+			return;
+		}
+
 		if (!isValid(entityId)) return;
 
 		TransmuteOperation operation = getOperation(entityId);
-		entityToIdentity.unsafeSet(entityId, operation.compositionId);
+		cm.setIdentity(entityId, operation.compositionId);
 	}
 
 	private boolean isValid(int entityId) {
@@ -80,7 +89,7 @@ public final class EntityTransmuter {
 	}
 
 	TransmuteOperation getOperation(int entityId) {
-		return operation(entityId, entityToIdentity.get(entityId));
+		return operation(entityId, cm.getIdentity(entityId));
 	}
 
 	private TransmuteOperation operation(int entityId, int compositionId) {
@@ -149,13 +158,13 @@ public final class EntityTransmuter {
 		private final ComponentMapper[] additions;
 		private final ComponentMapper[] removals;
 
-		public final short compositionId;
+		public final int compositionId;
 
 		public TransmuteOperation(int compositionId,
 		                          ComponentMapper[] additions,
 		                          ComponentMapper[] removals) {
 
-			this.compositionId = (short) compositionId;
+			this.compositionId = compositionId;
 			this.additions = additions;
 			this.removals = removals;
 		}
@@ -164,7 +173,7 @@ public final class EntityTransmuter {
 		                          Bag<ComponentMapper> additions,
 		                          Bag<ComponentMapper> removals) {
 
-			this.compositionId = (short) compositionId;
+			this.compositionId = compositionId;
 			this.additions = new ComponentMapper[additions.size()];
 			this.removals = new ComponentMapper[removals.size()];
 
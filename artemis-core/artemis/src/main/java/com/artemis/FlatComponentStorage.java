@@ -0,0 +1,38 @@
+package com.artemis;
+
+import java.util.Arrays;
+
+/**
+ * Component storage in a single array, with a reference per entity id.
+ */
+final class FlatComponentStorage<A> implements ComponentStorage<A> {
+	private Object[] data = new Object[64];
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public A get(int entityId) {
+		return (A) data[entityId];
+	}
+
+	@Override
+	public void unsafeSet(int entityId, A component) {
+		data[entityId] = component;
+	}
+
+	@Override
+	public void ensureCapacity(int entityId) {
+		if (entityId >= data.length)
+			data = Arrays.copyOf(data, Math.max(2 * data.length, entityId + 1));
+	}
+
+	@Override
+	public void trim(int capacity) {
+		if (capacity < data.length)
+			data = Arrays.copyOf(data, capacity);
+	}
+
+	@Override
+	public int getCapacity() {
+		return data.length;
+	}
+}
@@ -0,0 +1,59 @@
+package com.artemis;
+
+import com.artemis.utils.BitVector;
+
+/**
+ * Component storage of mappers sharing one flyweight between all entities:
+ * only tracks which entities have the component, a bit per entity id.
+ * {@link #get(int)} returns the last stored component for any of them.
+ *
+ * @see ArrayComponentMapper
+ * @see OffHeapComponentMapper
+ */
+final class FlyweightComponentStorage<A> implements ComponentStorage<A> {
+	private final BitVector present = new BitVector();
+	private A flyweight;
+	private int capacity;
+
+	@Override
+	public A get(int entityId) {
+		return present.get(entityId) ? flyweight : null;
+	}
+
+	@Override
+	public void unsafeSet(int entityId, A component) {
+		if (component != null) {
+			flyweight = component;
+			present.set(entityId);
+		} else {
+			present.clear(entityId);
+		}
+	}
+
+	@Override
+	public void ensureCapacity(int entityId) {
+		if (entityId < capacity)
+			return;
+
+		present.ensureCapacity(entityId);
+		capacity = entityId + 1;
+	}
+
+	@Override
+	public void trim(int capacity) {
+		if (capacity >= this.capacity)
+			return;
+
+		present.trim(capacity);
+		for (int i = present.nextSetBit(capacity); i >= 0; i = present.nextSetBit(i + 1)) {
+			present.unsafeClear(i);
+		}
+
+		this.capacity = capacity;
+	}
+
+	@Override
+	public int getCapacity() {
+		return capacity;
+	}
+}
@@ -1,9 +1,7 @@
 package com.artemis;
 
-import com.artemis.utils.Bag;
-
 public class ImmediateComponentRemover<A extends Component> extends ComponentRemover<A> {
-	public ImmediateComponentRemover(Bag<A> components, ComponentPool pool) {
+	public ImmediateComponentRemover(ComponentStorage<A> components, ComponentPool pool) {
 		super(components, pool);
 	}
 
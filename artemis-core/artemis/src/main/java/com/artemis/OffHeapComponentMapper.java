@@ -0,0 +1,706 @@
+package com.artemis;
+
+import com.artemis.annotations.OffHeapStorage;
+import com.artemis.utils.Bag;
+import com.artemis.utils.reflect.ClassReflection;
+import com.artemis.utils.reflect.Field;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Mapper for {@link OffHeapStorage} components: the primitive fields of
+ * each entity are packed at a fixed stride into pages of direct memory.
+ * <p>
+ * Pages hold {@link #PAGE_ENTITIES} consecutive entity ids, and are only
+ * allocated once a component is created for any entity in its range.
+ * Fields are laid out by decreasing size, keeping them naturally aligned.
+ * </p>
+ * <p>
+ * The fastest access is through the typed accessors taking a field
+ * offset, see {@link #offsetOf(String)}. {@link #get(int)} and
+ * {@link #create(int)} return a single flyweight instance, loaded with the
+ * values of the requested entity. Fields changed through the flyweight
+ * are written back when it is moved to another entity, on {@link #flush()},
+ * or when the typed accessors touch the entity it's loaded from. Only the
+ * last retrieved component is valid, see {@link ArrayComponentMapper}.
+ * </p>
+ * <p>
+ * All memory is released when the world is disposed; the mapper can't
+ * be used afterwards.
+ * </p>
+ *
+ * @param <A> Component type to map.
+ * @see OffHeapStorage
+ */
+public class OffHeapComponentMapper<A extends Component> extends ComponentMapper<A> {
+	public static final int PAGE_SHIFT = 12;
+	public static final int PAGE_ENTITIES = 1 << PAGE_SHIFT;
+	private static final int PAGE_MASK = PAGE_ENTITIES - 1;
+
+	private final A flyweight;
+	private final Slot[] slots;
+	/** Bytes per entity. */
+	private final int stride;
+
+	private ByteBuffer[] pages = new ByteBuffer[0];
+	/** Entity the flyweight is loaded from, or {@code -1}. */
+	private int flyweightId = -1;
+
+	public OffHeapComponentMapper(Class<A> type, World world) {
+		super(type, world, new FlyweightComponentStorage<A>());
+
+		if (this.type.isPooled)
+			throw new InvalidComponentException(type, "Pooled components can't use @OffHeapStorage.");
+
+		flyweight = ComponentManager.newInstance(type);
+
+		Bag<Slot> slots = new Bag<Slot>();
+		for (Class c = type; c != Component.class; c = c.getSuperclass()) {
+			for (Field field : ClassReflection.getDeclaredFields(c)) {
+				if (field.isStatic() || field.isTransient())
+					continue;
+
+				field.setAccessible(true);
+				slots.add(createSlot(type, field));
+			}
+		}
+
+		this.slots = new Slot[slots.size()];
+		for (int i = 0, s = slots.size(); s > i; i++) {
+			this.slots[i] = slots.get(i);
+		}
+
+		int offset = 0;
+		int alignment = 1;
+		for (int size = 8; size > 0; size >>= 1) {
+			for (Slot slot : this.slots) {
+				if (slot.size == size) {
+					slot.offset = offset;
+					offset += size;
+					alignment = Math.max(alignment, size);
+				}
+			}
+		}
+		stride = Math.max(1, (offset + alignment - 1) / alignment * alignment);
+	}
+
+	@Override
+	public A get(int entityId) {
+		checkConcurrentAccess();
+		if (components.get(entityId) == null)
+			return null;
+
+		if (flyweightId != entityId) {
+			flush();
+			load(entityId);
+		}
+
+		return flyweight;
+	}
+
+	@Override
+	public boolean has(int entityId) {
+		return components.get(entityId) != null && !purgatory.has(entityId);
+	}
+
+	@Override
+	public void remove(int entityId) {
+		checkConcurrentAccess();
+		if (components.get(entityId) != null) {
+			removeTransmuter.transmuteNoOperation(entityId);
+			purgatory.mark(entityId);
+		}
+	}
+
+	@Override
+	protected void internalRemove(int entityId) {
+		if (components.get(entityId) != null)
+			purgatory.mark(entityId);
+	}
+
+	@Override
+	public A create(int entityId) {
+		checkConcurrentAccess();
+		if (components.get(entityId) == null || purgatory.unmark(entityId)) {
+			// running transmuter first, as it performs som validation
+			createTransmuter.transmuteNoOperation(entityId);
+			reset(entityId);
+		}
+
+		return get(entityId);
+	}
+
+	@Override
+	public A internalCreate(int entityId) {
+		if (components.get(entityId) == null || purgatory.unmark(entityId))
+			reset(entityId);
+
+		return get(entityId);
+	}
+
+	@Override
+	void replace(int entityId, A component) {
+		if (flyweightId == entityId)
+			flyweightId = -1;
+
+		store(entityId, component);
+	}
+
+	@Override
+	void ensureCapacity(int newSize) {
+		super.ensureCapacity(newSize);
+		int pageCount = (newSize + PAGE_MASK) >> PAGE_SHIFT;
+		if (pageCount > pages.length)
+			pages = Arrays.copyOf(pages, pageCount);
+	}
+
+	@Override
+	boolean hasInstances() {
+		return false;
+	}
+
+	@Override
+	void trim(int newSize) {
+		flush();
+		super.trim(newSize);
+		int pageCount = (newSize + PAGE_MASK) >> PAGE_SHIFT;
+		if (pageCount < pages.length) {
+			for (int i = pageCount; pages.length > i; i++) {
+				if (pages[i] != null)
+					Deallocator.free(pages[i]);
+			}
+			pages = Arrays.copyOf(pages, pageCount);
+		}
+	}
+
+	@Override
+	void move(int fromEntityId, int toEntityId) {
+		flush();
+		super.move(fromEntityId, toEntityId);
+
+		reset(toEntityId);
+		ByteBuffer from = page(fromEntityId);
+		ByteBuffer to = page(toEntityId);
+		for (int i = 0, offset = position(fromEntityId), target = position(toEntityId); stride > i; i++) {
+			to.put(target + i, from.get(offset + i));
+		}
+	}
+
+	@Override
+	void dispose() {
+		flyweightId = -1;
+		for (int i = 0; pages.length > i; i++) {
+			if (pages[i] != null) {
+				Deallocator.free(pages[i]);
+				pages[i] = null;
+			}
+		}
+		pages = new ByteBuffer[0];
+	}
+
+	/** Writes back any changes to the flyweight, and detaches it from its entity. */
+	public void flush() {
+		if (flyweightId == -1)
+			return;
+
+		sync(flyweightId);
+		flyweightId = -1;
+	}
+
+	/**
+	 * @param field name of a field.
+	 * @return byte offset of the field, for the typed accessors.
+	 */
+	public int offsetOf(String field) {
+		for (Slot slot : slots) {
+			if (slot.field.getName().equals(field))
+				return slot.offset;
+		}
+
+		throw new IllegalArgumentException("No field " + field + " in " + ClassReflection.getSimpleName(type.getType()));
+	}
+
+	/** @return bytes occupied by each entity. */
+	public int getStride() {
+		return stride;
+	}
+
+	/**
+	 * Typed accessors bypass the flyweight. When it's loaded from the same
+	 * entity, its changes are written back first, and writes reload it.
+	 *
+	 * @param entityId entity with component.
+	 * @param offset field offset, from {@link #offsetOf(String)}.
+	 * @return value of the field.
+	 */
+	public int getInt(int entityId, int offset) {
+		sync(entityId);
+		return page(entityId).getInt(position(entityId) + offset);
+	}
+
+	public void setInt(int entityId, int offset, int value) {
+		sync(entityId);
+		page(entityId).putInt(position(entityId) + offset, value);
+		reload(entityId);
+	}
+
+	public long getLong(int entityId, int offset) {
+		sync(entityId);
+		return page(entityId).getLong(position(entityId) + offset);
+	}
+
+	public void setLong(int entityId, int offset, long value) {
+		sync(entityId);
+		page(entityId).putLong(position(entityId) + offset, value);
+		reload(entityId);
+	}
+
+	public float getFloat(int entityId, int offset) {
+		sync(entityId);
+		return page(entityId).getFloat(position(entityId) + offset);
+	}
+
+	public void setFloat(int entityId, int offset, float value) {
+		sync(entityId);
+		page(entityId).putFloat(position(entityId) + offset, value);
+		reload(entityId);
+	}
+
+	public double getDouble(int entityId, int offset) {
+		sync(entityId);
+		return page(entityId).getDouble(position(entityId) + offset);
+	}
+
+	public void setDouble(int entityId, int offset, double value) {
+		sync(entityId);
+		page(entityId).putDouble(position(entityId) + offset, value);
+		reload(entityId);
+	}
+
+	public boolean getBoolean(int entityId, int offset) {
+		sync(entityId);
+		return page(entityId).get(position(entityId) + offset) != 0;
+	}
+
+	public void setBoolean(int entityId, int offset, boolean value) {
+		sync(entityId);
+		page(entityId).put(position(entityId) + offset, (byte) (value ? 1 : 0));
+		reload(entityId);
+	}
+
+	/** @return number of allocated pages. */
+	int getPageCount() {
+		int count = 0;
+		for (ByteBuffer page : pages) {
+			if (page != null)
+				count++;
+		}
+
+		return count;
+	}
+
+	private ByteBuffer page(int entityId) {
+		return pages[entityId >> PAGE_SHIFT];
+	}
+
+	private int position(int entityId) {
+		return (entityId & PAGE_MASK) * stride;
+	}
+
+	private void reset(int entityId) {
+		components.unsafeSet(entityId, flyweight);
+
+		int index = entityId >> PAGE_SHIFT;
+		if (index >= pages.length)
+			pages = Arrays.copyOf(pages, index + 1);
+
+		ByteBuffer page = pages[index];
+		if (page == null) {
+			pages[index] = ByteBuffer.allocateDirect(PAGE_ENTITIES * stride).order(ByteOrder.nativeOrder());
+		} else {
+			for (int i = position(entityId), s = i + stride; s > i; i++) {
+				page.put(i, (byte) 0);
+			}
+		}
+
+		if (flyweightId == entityId)
+			flyweightId = -1;
+	}
+
+	private void load(int entityId) {
+		ByteBuffer page = page(entityId);
+		int position = position(entityId);
+		for (Slot slot : slots) {
+			slot.load(page, position, flyweight);
+		}
+
+		flyweightId = entityId;
+	}
+
+	/** Writes back changes to the flyweight, if loaded from the entity. */
+	private void sync(int entityId) {
+		if (flyweightId != entityId)
+			return;
+
+		ByteBuffer page = page(entityId);
+		int position = position(entityId);
+		for (Slot slot : slots) {
+			slot.flush(page, position, flyweight);
+		}
+	}
+
+	/** Loads the flyweight again, if loaded from the entity. */
+	private void reload(int entityId) {
+		if (flyweightId == entityId)
+			load(entityId);
+	}
+
+	private void store(int entityId, A component) {
+		ByteBuffer page = page(entityId);
+		int position = position(entityId);
+		for (Slot slot : slots) {
+			slot.store(page, position, component);
+		}
+	}
+
+	private static Slot createSlot(Class<?> type, Field field) {
+		Class fieldType = field.getType();
+		if (fieldType == long.class) {
+			return new LongSlot(field);
+		} else if (fieldType == double.class) {
+			return new DoubleSlot(field);
+		} else if (fieldType == int.class) {
+			return new IntSlot(field);
+		} else if (fieldType == float.class) {
+			return new FloatSlot(field);
+		} else if (fieldType == short.class) {
+			return new ShortSlot(field);
+		} else if (fieldType == char.class) {
+			return new CharSlot(field);
+		} else if (fieldType == byte.class) {
+			return new ByteSlot(field);
+		} else if (fieldType == boolean.class) {
+			return new BooleanSlot(field);
+		}
+
+		throw new InvalidComponentException(type,
+			"Unsupported field type for @OffHeapStorage: " + field.getName());
+	}
+
+	/** Location of one field within an entity's stride. */
+	private abstract static class Slot {
+		final Field field;
+		final PrimitiveField access;
+		final int size;
+		int offset;
+
+		Slot(Field field, int size) {
+			this.field = field;
+			this.size = size;
+			access = new PrimitiveField(field);
+		}
+
+		/** Copies the entity's value to the flyweight. */
+		abstract void load(ByteBuffer page, int position, Component flyweight);
+
+		/** Writes back the flyweight's value, if changed since loaded. */
+		abstract void flush(ByteBuffer page, int position, Component flyweight);
+
+		abstract void store(ByteBuffer page, int position, Component component);
+	}
+
+	private static final class LongSlot extends Slot {
+		long loaded;
+
+		LongSlot(Field field) {
+			super(field, 8);
+		}
+
+		@Override
+		void load(ByteBuffer page, int position, Component flyweight) {
+			int index = position + offset;
+			loaded = page.getLong(index);
+			access.setLong(flyweight, loaded);
+		}
+
+		@Override
+		void flush(ByteBuffer page, int position, Component flyweight) {
+			long value = access.getLong(flyweight);
+			if (value != loaded) {
+				int index = position + offset;
+				page.putLong(index, value);
+				loaded = value;
+			}
+		}
+
+		@Override
+		void store(ByteBuffer page, int position, Component component) {
+			int index = position + offset;
+			page.putLong(index, access.getLong(component));
+		}
+	}
+
+	private static final class DoubleSlot extends Slot {
+		double loaded;
+
+		DoubleSlot(Field field) {
+			super(field, 8);
+		}
+
+		@Override
+		void load(ByteBuffer page, int position, Component flyweight) {
+			int index = position + offset;
+			loaded = page.getDouble(index);
+			access.setDouble(flyweight, loaded);
+		}
+
+		@Override
+		void flush(ByteBuffer page, int position, Component flyweight) {
+			double value = access.getDouble(flyweight);
+			if (Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(loaded)) {
+				int index = position + offset;
+				page.putDouble(index, value);
+				loaded = value;
+			}
+		}
+
+		@Override
+		void store(ByteBuffer page, int position, Component component) {
+			int index = position + offset;
+			page.putDouble(index, access.getDouble(component));
+		}
+	}
+
+	private static final class IntSlot extends Slot {
+		int loaded;
+
+		IntSlot(Field field) {
+			super(field, 4);
+		}
+
+		@Override
+		void load(ByteBuffer page, int position, Component flyweight) {
+			int index = position + offset;
+			loaded = page.getInt(index);
+			access.setInt(flyweight, loaded);
+		}
+
+		@Override
+		void flush(ByteBuffer page, int position, Component flyweight) {
+			int value = access.getInt(flyweight);
+			if (value != loaded) {
+				int index = position + offset;
+				page.putInt(index, value);
+				loaded = value;
+			}
+		}
+
+		@Override
+		void store(ByteBuffer page, int position, Component component) {
+			int index = position + offset;
+			page.putInt(index, access.getInt(component));
+		}
+	}
+
+	private static final class FloatSlot extends Slot {
+		float loaded;
+
+		FloatSlot(Field field) {
+			super(field, 4);
+		}
+
+		@Override
+		void load(ByteBuffer page, int position, Component flyweight) {
+			int index = position + offset;
+			loaded = page.getFloat(index);
+			access.setFloat(flyweight, loaded);
+		}
+
+		@Override
+		void flush(ByteBuffer page, int position, Component flyweight) {
+			float value = access.getFloat(flyweight);
+			if (Float.floatToRawIntBits(value) != Float.floatToRawIntBits(loaded)) {
+				int index = position + offset;
+				page.putFloat(index, value);
+				loaded = value;
+			}
+		}
+
+		@Override
+		void store(ByteBuffer page, int position, Component component) {
+			int index = position + offset;
+			page.putFloat(index, access.getFloat(component));
+		}
+	}
+
+	private static final class ShortSlot extends Slot {
+		short loaded;
+
+		ShortSlot(Field field) {
+			super(field, 2);
+		}
+
+		@Override
+		void load(ByteBuffer page, int position, Component flyweight) {
+			int index = position + offset;
+			loaded = page.getShort(index);
+			access.setShort(flyweight, loaded);
+		}
+
+		@Override
+		void flush(ByteBuffer page, int position, Component flyweight) {
+			short value = access.getShort(flyweight);
+			if (value != loaded) {
+				int index = position + offset;
+				page.putShort(index, value);
+				loaded = value;
+			}
+		}
+
+		@Override
+		void store(ByteBuffer page, int position, Component component) {
+			int index = position + offset;
+			page.putShort(index, access.getShort(component));
+		}
+	}
+
+	private static final class CharSlot extends Slot {
+		char loaded;
+
+		CharSlot(Field field) {
+			super(field, 2);
+		}
+
+		@Override
+		void load(ByteBuffer page, int position, Component flyweight) {
+			int index = position + offset;
+			loaded = page.getChar(index);
+			access.setChar(flyweight, loaded);
+		}
+
+		@Override
+		void flush(ByteBuffer page, int position, Component flyweight) {
+			char value = access.getChar(flyweight);
+			if (value != loaded) {
+				int index = position + offset;
+				page.putChar(index, value);
+				loaded = value;
+			}
+		}
+
+		@Override
+		void store(ByteBuffer page, int position, Component component) {
+			int index = position + offset;
+			page.putChar(index, access.getChar(component));
+		}
+	}
+
+	private static final class ByteSlot extends Slot {
+		byte loaded;
+
+		ByteSlot(Field field) {
+			super(field, 1);
+		}
+
+		@Override
+		void load(ByteBuffer page, int position, Component flyweight) {
+			int index = position + offset;
+			loaded = page.get(index);
+			access.setByte(flyweight, loaded);
+		}
+
+		@Override
+		void flush(ByteBuffer page, int position, Component flyweight) {
+			byte value = access.getByte(flyweight);
+			if (value != loaded) {
+				int index = position + offset;
+				page.put(index, value);
+				loaded = value;
+			}
+		}
+
+		@Override
+		void store(ByteBuffer page, int position, Component component) {
+			int index = position + offset;
+			page.put(index, access.getByte(component));
+		}
+	}
+
+	private static final class BooleanSlot extends Slot {
+		boolean loaded;
+
+		BooleanSlot(Field field) {
+			super(field, 1);
+		}
+
+		@Override
+		void load(ByteBuffer page, int position, Component flyweight) {
+			int index = position + offset;
+			loaded = page.get(index) != 0;
+			access.setBoolean(flyweight, loaded);
+		}
+
+		@Override
+		void flush(ByteBuffer page, int position, Component flyweight) {
+			boolean value = access.getBoolean(flyweight);
+			if (value != loaded) {
+				int index = position + offset;
+				page.put(index, (byte) (value ? 1 : 0));
+				loaded = value;
+			}
+		}
+
+		@Override
+		void store(ByteBuffer page, int position, Component component) {
+			int index = position + offset;
+			page.put(index, (byte) (access.getBoolean(component) ? 1 : 0));
+		}
+	}
+
+	/**
+	 * Releases direct buffers without waiting for the garbage collector,
+	 * through the buffer's cleaner. Falls back to dropping the reference
+	 * where the cleaner isn't reachable.
+	 */
+	private static final class Deallocator {
+		private static final Object unsafe;
+		private static final Method invokeCleaner;
+
+		static {
+			Object instance = null;
+			Method method = null;
+			try {
+				Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+				method = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+				java.lang.reflect.Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				instance = theUnsafe.get(null);
+			} catch (Exception e) {
+				// java 8 and earlier: see free(ByteBuffer)
+				method = null;
+			}
+
+			unsafe = instance;
+			invokeCleaner = method;
+		}
+
+		static void free(ByteBuffer buffer) {
+			try {
+				if (invokeCleaner != null) {
+					invokeCleaner.invoke(unsafe, buffer);
+				} else {
+					Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+					cleanerMethod.setAccessible(true);
+					Object cleaner = cleanerMethod.invoke(buffer);
+					if (cleaner != null)
+						cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			} catch (Exception e) {
+				// left to the garbage collector
+			}
+		}
+	}
+}
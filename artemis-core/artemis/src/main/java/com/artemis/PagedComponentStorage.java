@@ -0,0 +1,177 @@
+package com.artemis;
+
+import java.util.Arrays;
+
+/**
+ * Component storage allocating memory in pages of {@link #PAGE_SIZE}
+ * entity ids, only once a page holds any component. Rarely used component
+ * types no longer need a reference per entity in the world.
+ * <p>
+ * Unallocated pages share a single empty page, so {@link #get(int)} is a
+ * branch-free double array lookup. In adaptive mode, storage is collapsed
+ * into a single page - a flat array - once more than half of the entity
+ * ids it can hold have the component, and split into pages again once less
+ * than an eighth do. Occupancy is only measured when the storage grows.
+ * </p>
+ */
+final class PagedComponentStorage<E> implements ComponentStorage<E> {
+	static final int PAGE_SHIFT = 10;
+	static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+	/** Shift of the single page holding all elements, when dense. */
+	private static final int DENSE_SHIFT = 31;
+
+	private final boolean adaptive;
+	private final Object[] empty = new Object[PAGE_SIZE];
+
+	private Object[][] pages = new Object[0][];
+	private int shift = PAGE_SHIFT;
+	private int mask = PAGE_SIZE - 1;
+	private int capacity;
+	/** Number of non-null elements. */
+	private int count;
+
+	/**
+	 * @param adaptive {@code true} to switch between pages and a flat
+	 *                 array, depending on occupancy.
+	 */
+	PagedComponentStorage(boolean adaptive) {
+		this.adaptive = adaptive;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		return (E) pages[index >>> shift][index & mask];
+	}
+
+	@Override
+	public void unsafeSet(int index, E e) {
+		Object[] page = pages[index >>> shift];
+		if (page == empty) {
+			if (e == null)
+				return;
+
+			page = new Object[PAGE_SIZE];
+			pages[index >>> shift] = page;
+		}
+
+		int offset = index & mask;
+		if (page[offset] == null) {
+			if (e != null)
+				count++;
+		} else if (e == null) {
+			count--;
+		}
+
+		page[offset] = e;
+	}
+
+	@Override
+	public void ensureCapacity(int index) {
+		if (index < capacity)
+			return;
+
+		int newCapacity = (index + PAGE_SIZE) & ~(PAGE_SIZE - 1);
+
+		boolean dense = shift == DENSE_SHIFT;
+		if (adaptive) {
+			if (!dense && count > capacity / 2)
+				dense = true;
+			else if (dense && count < capacity / 8)
+				dense = false;
+		}
+
+		if (dense)
+			growDense(newCapacity);
+		else
+			growPaged(newCapacity);
+
+		capacity = newCapacity;
+	}
+
+	@Override
+	public void trim(int capacity) {
+		int newCapacity = (capacity + PAGE_SIZE - 1) & ~(PAGE_SIZE - 1);
+		if (newCapacity >= this.capacity)
+			return;
+
+		for (int i = newCapacity; this.capacity > i; i++) {
+			unsafeSet(i, null);
+		}
+
+		if (shift == DENSE_SHIFT)
+			pages[0] = Arrays.copyOf(pages[0], newCapacity);
+		else
+			pages = Arrays.copyOf(pages, newCapacity >>> PAGE_SHIFT);
+
+		this.capacity = newCapacity;
+	}
+
+	@Override
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/** @return {@code true} if stored in a single flat array. */
+	boolean isDense() {
+		return shift == DENSE_SHIFT;
+	}
+
+	/** @return number of allocated pages. */
+	int getPageCount() {
+		int allocated = 0;
+		for (Object[] page : pages) {
+			if (page != empty)
+				allocated++;
+		}
+
+		return allocated;
+	}
+
+	private void growDense(int newCapacity) {
+		Object[] flat;
+		if (shift == DENSE_SHIFT) {
+			flat = Arrays.copyOf(pages[0], newCapacity);
+		} else {
+			flat = new Object[newCapacity];
+			for (int i = 0; pages.length > i; i++) {
+				if (pages[i] != empty)
+					System.arraycopy(pages[i], 0, flat, i << PAGE_SHIFT, PAGE_SIZE);
+			}
+		}
+
+		pages = new Object[][] {flat};
+		shift = DENSE_SHIFT;
+		mask = Integer.MAX_VALUE;
+	}
+
+	private void growPaged(int newCapacity) {
+		Object[][] newPages = new Object[newCapacity >>> PAGE_SHIFT][];
+		if (shift == DENSE_SHIFT) {
+			Object[] flat = pages[0];
+			for (int i = 0; newPages.length > i; i++) {
+				int from = i << PAGE_SHIFT;
+				newPages[i] = (flat.length > from && hasElements(flat, from))
+					? Arrays.copyOfRange(flat, from, from + PAGE_SIZE)
+					: empty;
+			}
+		} else {
+			System.arraycopy(pages, 0, newPages, 0, pages.length);
+			Arrays.fill(newPages, pages.length, newPages.length, empty);
+		}
+
+		pages = newPages;
+		shift = PAGE_SHIFT;
+		mask = PAGE_SIZE - 1;
+	}
+
+	private static boolean hasElements(Object[] flat, int from) {
+		for (int i = from, s = from + PAGE_SIZE; s > i; i++) {
+			if (flat[i] != null)
+				return true;
+		}
+
+		return false;
+	}
+}
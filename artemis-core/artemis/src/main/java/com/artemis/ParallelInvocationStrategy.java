@@ -0,0 +1,287 @@
+package com.artemis;
+
+import com.artemis.annotations.Read;
+import com.artemis.annotations.Write;
+import com.artemis.utils.Bag;
+import com.artemis.utils.BitVector;
+import com.artemis.utils.IntBag;
+import com.artemis.utils.reflect.ClassReflection;
+import com.artemis.utils.reflect.Field;
+import com.artemis.utils.reflect.ReflectionException;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs systems without conflicting component access concurrently.
+ * <p>
+ * Systems declare component access by annotating their mappers, or the
+ * system itself, with {@link Read} and {@link Write}; components matched
+ * by the aspect of a {@link BaseEntitySystem} count as read. Reading
+ * components of a mapper sharing one flyweight instance, such as
+ * {@link ArrayComponentMapper}, counts as writing them. Two systems
+ * conflict when either writes a type the other reads or writes. Systems
+ * without any declarations never run concurrently with other systems.
+ * </p>
+ * <p>
+ * Systems are grouped into stages: each system is placed in the stage
+ * after the last earlier system it conflicts with. Stages run in order;
+ * the systems of a stage run on a {@link ForkJoinPool}. Within a stage,
+ * composition changes and deletions are recorded per system and
+ * applied in system order once all systems of the stage are done,
+ * followed by updating entity subscriptions - the same sync point
+ * {@link InvocationStrategy} performs before each system.
+ * </p>
+ * <p>
+ * Concurrently running systems:
+ * <ul>
+ *   <li>see composition changes and deletions of other systems in the
+ *   same stage only after the stage completes,</li>
+ *   <li>can't create entities, as entity ids can't be deferred,</li>
+ *   <li>must not access shared state outside of declared components.</li>
+ * </ul>
+ * Systems alone in their stage run on the calling thread, without
+ * these restrictions.
+ * </p>
+ *
+ * @see Read
+ * @see Write
+ */
+public class ParallelInvocationStrategy extends SystemInvocationStrategy {
+	private final ForkJoinPool pool;
+
+	private final Bag<IntBag> stages = new Bag<IntBag>();
+	private final Bag<StructuralChanges> changes = new Bag<StructuralChanges>(StructuralChanges.class);
+	private final ThreadLocalChanges deferral = new ThreadLocalChanges();
+
+	private final IntBag running = new IntBag();
+
+	/** Runs systems on a pool sized to the number of available processors. */
+	public ParallelInvocationStrategy() {
+		this(new ForkJoinPool());
+	}
+
+	/** @param pool runs systems sharing a stage. */
+	public ParallelInvocationStrategy(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	protected void initialize() {
+		Bag<SystemAccess> access = new Bag<SystemAccess>();
+		for (int i = 0, s = systems.size(); s > i; i++) {
+			access.add(new SystemAccess(world, systems.get(i)));
+			changes.add(new StructuralChanges());
+		}
+
+		int[] stageOf = new int[systems.size()];
+		for (int i = 0, s = systems.size(); s > i; i++) {
+			int stage = 0;
+			for (int j = 0; i > j; j++) {
+				if (access.get(i).conflicts(access.get(j)))
+					stage = Math.max(stage, stageOf[j] + 1);
+			}
+
+			stageOf[i] = stage;
+			if (stages.safeGet(stage) == null)
+				stages.set(stage, new IntBag());
+
+			stages.get(stage).add(i);
+		}
+	}
+
+	@Override
+	protected void process() {
+		BaseSystem[] systemsData = systems.getData();
+		for (int i = 0, s = stages.size(); s > i; i++) {
+			IntBag stage = stages.get(i);
+
+			running.setSize(0);
+			for (int j = 0, t = stage.size(); t > j; j++) {
+				if (!disabled.get(stage.get(j)))
+					running.add(stage.get(j));
+			}
+
+			if (running.isEmpty())
+				continue;
+
+			updateEntityStates();
+			if (running.size() == 1) {
+				systemsData[running.get(0)].process();
+			} else {
+				processConcurrently();
+			}
+		}
+
+		updateEntityStates();
+	}
+
+	private void processConcurrently() {
+		ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[running.size()];
+		for (int i = 0, s = running.size(); s > i; i++) {
+			int index = running.get(i);
+			tasks[i] = new SystemTask(systems.get(index), changes.get(index));
+		}
+
+		// systems of a stage may share a subscription, which lazily
+		// rebuilds - and, when grouped, sorts - its entities on first access
+		for (int i = 0, s = running.size(); s > i; i++) {
+			BaseSystem system = systems.get(running.get(i));
+			if (system instanceof BaseEntitySystem)
+				((BaseEntitySystem) system).getSubscription().getEntities();
+		}
+
+		BatchChangeProcessor batchProcessor = world.batchProcessor;
+		batchProcessor.deferral = deferral;
+		try {
+			pool.invoke(new StageTask(tasks));
+		} finally {
+			batchProcessor.deferral = null;
+		}
+
+		for (int i = 0, s = running.size(); s > i; i++) {
+			changes.get(running.get(i)).apply(world);
+		}
+	}
+
+	/**
+	 * @param system a registered system.
+	 * @return index of the stage the system runs in.
+	 */
+	int getStage(BaseSystem system) {
+		for (int i = 0, s = stages.size(); s > i; i++) {
+			IntBag stage = stages.get(i);
+			for (int j = 0, t = stage.size(); t > j; j++) {
+				if (systems.get(stage.get(j)) == system)
+					return i;
+			}
+		}
+
+		throw new RuntimeException("huh?");
+	}
+
+	private static final class StageTask extends RecursiveAction {
+		private final ForkJoinTask<?>[] systems;
+
+		StageTask(ForkJoinTask<?>[] systems) {
+			this.systems = systems;
+		}
+
+		@Override
+		protected void compute() {
+			invokeAll(systems);
+		}
+	}
+
+	private final class SystemTask extends RecursiveAction {
+		private final BaseSystem system;
+		private final StructuralChanges changes;
+
+		SystemTask(BaseSystem system, StructuralChanges changes) {
+			this.system = system;
+			this.changes = changes;
+		}
+
+		@Override
+		protected void compute() {
+			// a joining thread may run another system in between
+			StructuralChanges previous = deferral.bind(changes);
+			try {
+				system.process();
+			} finally {
+				deferral.bind(previous);
+			}
+		}
+	}
+
+	/** Component types read and written by a system. */
+	static final class SystemAccess {
+		final BitVector reads = new BitVector();
+		final BitVector writes = new BitVector();
+		/** Undeclared systems conflict with all other systems. */
+		final boolean exclusive;
+
+		SystemAccess(World world, BaseSystem system) {
+			ComponentTypeFactory types = world.getComponentManager().typeFactory;
+			boolean declared = false;
+
+			Bag<BaseComponentMapper> undeclared = new Bag<BaseComponentMapper>();
+			for (Class c = system.getClass(); c != BaseSystem.class; c = c.getSuperclass()) {
+				Read read = ClassReflection.getAnnotation(c, Read.class);
+				if (read != null) {
+					declared = true;
+					add(types, read.value(), reads);
+				}
+
+				Write write = ClassReflection.getAnnotation(c, Write.class);
+				if (write != null) {
+					declared = true;
+					add(types, write.value(), writes);
+				}
+
+				for (Field field : ClassReflection.getDeclaredFields(c)) {
+					if (!ClassReflection.isAssignableFrom(BaseComponentMapper.class, field.getType()))
+						continue;
+
+					BaseComponentMapper mapper = mapper(field, system);
+					if (mapper == null)
+						continue;
+
+					if (field.isAnnotationPresent(Write.class)) {
+						declared = true;
+						writes.set(mapper.getType().getIndex());
+					} else if (field.isAnnotationPresent(Read.class)) {
+						declared = true;
+						reads.set(mapper.getType().getIndex());
+					} else {
+						undeclared.add(mapper);
+					}
+				}
+			}
+
+			for (BaseComponentMapper mapper : undeclared) {
+				writes.set(mapper.getType().getIndex());
+			}
+
+			if (system instanceof BaseEntitySystem) {
+				Aspect aspect = ((BaseEntitySystem) system).getSubscription().getAspect();
+				reads.or(aspect.getAllSet());
+				reads.or(aspect.getOneSet());
+				reads.or(aspect.getExclusionSet());
+			}
+
+			// reading from a flyweight mapper reloads its flyweight
+			ComponentManager cm = world.getComponentManager();
+			for (int i = reads.nextSetBit(0); i >= 0; i = reads.nextSetBit(i + 1)) {
+				if (!cm.getMapper(types.getTypeFor(i).getType()).hasInstances())
+					writes.set(i);
+			}
+
+			exclusive = !declared;
+		}
+
+		boolean conflicts(SystemAccess other) {
+			return exclusive
+				|| other.exclusive
+				|| writes.intersects(other.writes)
+				|| writes.intersects(other.reads)
+				|| reads.intersects(other.writes);
+		}
+
+		private static void add(ComponentTypeFactory types, Class<? extends Component>[] components, BitVector out) {
+			for (Class<? extends Component> component : components) {
+				out.set(types.getIndexFor(component));
+			}
+		}
+
+		private static BaseComponentMapper mapper(Field field, BaseSystem system) {
+			try {
+				field.setAccessible(true);
+				return (BaseComponentMapper) field.get(system);
+			} catch (ReflectionException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+}
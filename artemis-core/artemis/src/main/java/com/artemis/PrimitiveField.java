@@ -0,0 +1,235 @@
+package com.artemis;
+
+import com.artemis.utils.reflect.Field;
+import sun.misc.Unsafe;
+
+/**
+ * Typed access to a primitive field of a component, without boxing.
+ * <p>
+ * Reads and writes the field at its offset through {@code sun.misc.Unsafe},
+ * falling back to typed reflection where it isn't available.
+ * </p>
+ *
+ * @see ArrayComponentMapper
+ * @see OffHeapComponentMapper
+ */
+final class PrimitiveField {
+	private static final Unsafe unsafe = unsafe();
+
+	private final java.lang.reflect.Field field;
+	private final long offset;
+
+	PrimitiveField(Field field) {
+		try {
+			this.field = field.getDeclaringClass().getDeclaredField(field.getName());
+			this.field.setAccessible(true);
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		}
+
+		offset = (unsafe != null) ? unsafe.objectFieldOffset(this.field) : -1;
+	}
+
+	int getInt(Component c) {
+		if (unsafe != null)
+			return unsafe.getInt(c, offset);
+
+		try {
+			return field.getInt(c);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	void setInt(Component c, int value) {
+		if (unsafe != null) {
+			unsafe.putInt(c, offset, value);
+			return;
+		}
+
+		try {
+			field.setInt(c, value);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	long getLong(Component c) {
+		if (unsafe != null)
+			return unsafe.getLong(c, offset);
+
+		try {
+			return field.getLong(c);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	void setLong(Component c, long value) {
+		if (unsafe != null) {
+			unsafe.putLong(c, offset, value);
+			return;
+		}
+
+		try {
+			field.setLong(c, value);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	float getFloat(Component c) {
+		if (unsafe != null)
+			return unsafe.getFloat(c, offset);
+
+		try {
+			return field.getFloat(c);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	void setFloat(Component c, float value) {
+		if (unsafe != null) {
+			unsafe.putFloat(c, offset, value);
+			return;
+		}
+
+		try {
+			field.setFloat(c, value);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	double getDouble(Component c) {
+		if (unsafe != null)
+			return unsafe.getDouble(c, offset);
+
+		try {
+			return field.getDouble(c);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	void setDouble(Component c, double value) {
+		if (unsafe != null) {
+			unsafe.putDouble(c, offset, value);
+			return;
+		}
+
+		try {
+			field.setDouble(c, value);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	boolean getBoolean(Component c) {
+		if (unsafe != null)
+			return unsafe.getBoolean(c, offset);
+
+		try {
+			return field.getBoolean(c);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	void setBoolean(Component c, boolean value) {
+		if (unsafe != null) {
+			unsafe.putBoolean(c, offset, value);
+			return;
+		}
+
+		try {
+			field.setBoolean(c, value);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	byte getByte(Component c) {
+		if (unsafe != null)
+			return unsafe.getByte(c, offset);
+
+		try {
+			return field.getByte(c);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	void setByte(Component c, byte value) {
+		if (unsafe != null) {
+			unsafe.putByte(c, offset, value);
+			return;
+		}
+
+		try {
+			field.setByte(c, value);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	short getShort(Component c) {
+		if (unsafe != null)
+			return unsafe.getShort(c, offset);
+
+		try {
+			return field.getShort(c);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	void setShort(Component c, short value) {
+		if (unsafe != null) {
+			unsafe.putShort(c, offset, value);
+			return;
+		}
+
+		try {
+			field.setShort(c, value);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	char getChar(Component c) {
+		if (unsafe != null)
+			return unsafe.getChar(c, offset);
+
+		try {
+			return field.getChar(c);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	void setChar(Component c, char value) {
+		if (unsafe != null) {
+			unsafe.putChar(c, offset, value);
+			return;
+		}
+
+		try {
+			field.setChar(c, value);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static Unsafe unsafe() {
+		try {
+			java.lang.reflect.Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			return (Unsafe) theUnsafe.get(null);
+		} catch (Throwable t) {
+			// left to reflection
+			return null;
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package com.artemis;
+
+import com.artemis.utils.Bag;
+import com.artemis.utils.IntBag;
+
+/**
+ * Composition changes and deletions recorded while systems run
+ * concurrently. Changes are applied in recorded order at the next
+ * sync point, when only one thread touches the world.
+ * <p>
+ * Component instances are normally still added and removed immediately
+ * by {@link ComponentMapper}; only the resulting composition ids, change
+ * bits and deletions are deferred. Changes recording components also
+ * defer creating and removing components, for tasks sharing mappers.
+ * </p>
+ *
+ * @see ParallelInvocationStrategy
+ */
+final class StructuralChanges {
+	private static final int TRANSMUTE = 0;
+	private static final int TRANSMUTE_NO_OPERATION = 1;
+	private static final int DELETE = 2;
+	private static final int CREATE = 3;
+	private static final int REMOVE = 4;
+
+	/** Pairs of operation and entity id. */
+	private final IntBag operations = new IntBag();
+	/** Transmuter of each transmute operation, in order. */
+	private final Bag<EntityTransmuter> transmuters = new Bag<EntityTransmuter>(EntityTransmuter.class);
+	/** Mapper of each create and remove operation, in order. */
+	private final Bag<ComponentMapper> mappers = new Bag<ComponentMapper>(ComponentMapper.class);
+	/** Component of each create and remove operation, or {@code null}. */
+	private final Bag<Component> components = new Bag<Component>(Component.class);
+	/**
+	 * Per component type index, last create or remove operation of each
+	 * entity id, offset by one; {@code 0} if none.
+	 */
+	private final Bag<IntBag> lastChanges = new Bag<IntBag>(IntBag.class);
+
+	/** If set, component instances are created and removed when applied. */
+	final boolean recordsComponents;
+
+	StructuralChanges() {
+		this(false);
+	}
+
+	StructuralChanges(boolean recordsComponents) {
+		this.recordsComponents = recordsComponents;
+	}
+
+	void transmute(EntityTransmuter transmuter, int entityId) {
+		record(TRANSMUTE, entityId);
+		transmuters.add(transmuter);
+	}
+
+	void transmuteNoOperation(EntityTransmuter transmuter, int entityId) {
+		record(TRANSMUTE_NO_OPERATION, entityId);
+		transmuters.add(transmuter);
+	}
+
+	void delete(int entityId) {
+		record(DELETE, entityId);
+	}
+
+	/** @param component instance to add, replacing any current one. */
+	void create(ComponentMapper mapper, int entityId, Component component) {
+		record(CREATE, entityId);
+		record(mapper, entityId, component);
+	}
+
+	void remove(ComponentMapper mapper, int entityId) {
+		record(REMOVE, entityId);
+		record(mapper, entityId, null);
+	}
+
+	/**
+	 * Finds the last recorded create or remove of a component.
+	 *
+	 * @return index of the change, or {@code -1} if none.
+	 * @see #created(int)
+	 */
+	int lastChange(ComponentMapper mapper, int entityId) {
+		IntBag changes = lastChanges.safeGet(mapper.getType().getIndex());
+		return (changes != null && changes.isIndexWithinBounds(entityId))
+			? changes.unsafeGet(entityId) - 1
+			: -1;
+	}
+
+	/** @return component added by the change, or {@code null} if removed. */
+	Component created(int change) {
+		return components.get(change);
+	}
+
+	/** Appends all changes of {@code other}, leaving it empty. */
+	void drainFrom(StructuralChanges other) {
+		int[] ops = other.operations.getData();
+		for (int i = 0, m = 0, s = other.operations.size(); s > i; i += 2) {
+			int entityId = ops[i + 1];
+			record(ops[i], entityId);
+			if (ops[i] == CREATE || ops[i] == REMOVE) {
+				record(other.mappers.get(m), entityId, other.components.get(m));
+				m++;
+			}
+		}
+		for (int i = 0, s = other.transmuters.size(); s > i; i++) {
+			transmuters.add(other.transmuters.get(i));
+		}
+
+		other.clear();
+	}
+
+	boolean isEmpty() {
+		return operations.isEmpty();
+	}
+
+	/**
+	 * Performs all recorded changes, then clears them. Must not be
+	 * called while changes are deferred.
+	 */
+	@SuppressWarnings("unchecked")
+	void apply(World world) {
+		int[] ops = operations.getData();
+		for (int i = 0, t = 0, m = 0, s = operations.size(); s > i; i += 2) {
+			int entityId = ops[i + 1];
+			switch (ops[i]) {
+				case TRANSMUTE:
+					transmuters.get(t++).transmute(entityId);
+					break;
+				case TRANSMUTE_NO_OPERATION:
+					transmuters.get(t++).transmuteNoOperation(entityId);
+					break;
+				case CREATE:
+					ComponentMapper mapper = mappers.get(m);
+					Component component = components.get(m++);
+					if (mapper.create(entityId) != component)
+						mapper.replace(entityId, component);
+					break;
+				case REMOVE:
+					mappers.get(m++).remove(entityId);
+					break;
+				default:
+					world.delete(entityId);
+			}
+		}
+
+		clear();
+	}
+
+	void clear() {
+		int[] ops = operations.getData();
+		for (int i = 0, m = 0, s = operations.size(); s > i; i += 2) {
+			if (ops[i] == CREATE || ops[i] == REMOVE)
+				lastChanges.get(mappers.get(m++).getType().getIndex()).unsafeSet(ops[i + 1], 0);
+		}
+
+		operations.setSize(0);
+		transmuters.clear();
+		mappers.clear();
+		components.clear();
+	}
+
+	private void record(int operation, int entityId) {
+		operations.add(operation);
+		operations.add(entityId);
+	}
+
+	private void record(ComponentMapper mapper, int entityId, Component component) {
+		int type = mapper.getType().getIndex();
+		IntBag changes = lastChanges.safeGet(type);
+		if (changes == null) {
+			changes = new IntBag();
+			lastChanges.set(type, changes);
+		}
+
+		changes.set(entityId, mappers.size() + 1);
+		mappers.add(mapper);
+		components.add(component);
+	}
+
+	/**
+	 * Provides the changes of the calling thread while changes are deferred.
+	 *
+	 * @see BatchChangeProcessor#deferral
+	 */
+	interface Source {
+		StructuralChanges changes();
+	}
+}
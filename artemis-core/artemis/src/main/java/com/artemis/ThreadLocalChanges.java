@@ -0,0 +1,35 @@
+package com.artemis;
+
+/**
+ * Records structural changes to the buffer bound to the calling thread.
+ *
+ * @see ParallelInvocationStrategy
+ * @see ConcurrentChanges
+ */
+final class ThreadLocalChanges implements StructuralChanges.Source {
+	private final ThreadLocal<StructuralChanges> current = new ThreadLocal<StructuralChanges>();
+
+	@Override
+	public StructuralChanges changes() {
+		StructuralChanges changes = current.get();
+		if (changes == null)
+			throw new IllegalStateException("Structural change from a thread not running a system.");
+
+		return changes;
+	}
+
+	/**
+	 * @param changes buffer for the calling thread, or {@code null}.
+	 * @return previously bound buffer, to be restored afterwards.
+	 */
+	StructuralChanges bind(StructuralChanges changes) {
+		StructuralChanges previous = current.get();
+		if (changes != null) {
+			current.set(changes);
+		} else {
+			current.remove();
+		}
+
+		return previous;
+	}
+}
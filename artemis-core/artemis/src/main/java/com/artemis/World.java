@@ -3,6 +3,7 @@ package com.artemis;
 import com.artemis.injection.CachedInjector;
 import com.artemis.injection.Injector;
 import com.artemis.utils.Bag;
+import com.artemis.utils.BitVector;
 import com.artemis.utils.ImmutableBag;
 import com.artemis.utils.IntBag;
 
@@ -47,6 +48,8 @@ public class World {
 	public float delta;
 
 	final boolean alwaysDelayComponentRemoval;
+	final boolean adaptiveComponentStorage;
+	final int autoTrimFrames;
 
 	/**
 	 * Creates a world without custom systems.
@@ -77,11 +80,17 @@ public class World {
 		final EntityManager lem = (EntityManager) systemsBag.get(ENTITY_MANAGER_IDX);
 		final AspectSubscriptionManager lasm = (AspectSubscriptionManager) systemsBag.get(ASPECT_SUBSCRIPTION_MANAGER_IDX);
 
-		cm = lcm == null ? new ComponentManager(configuration.expectedEntityCount()) : lcm;
-		em = lem == null ? new EntityManager(configuration.expectedEntityCount()) : lem;
+		cm = lcm == null
+			? new ComponentManager(configuration.expectedEntityCount(), configuration.isWideCompositionIdentities())
+			: lcm;
+		em = lem == null
+			? new EntityManager(configuration.expectedEntityCount(), configuration.isTrackEntityGenerations())
+			: lem;
 		asm = lasm == null ? new AspectSubscriptionManager() : lasm;
 		batchProcessor = new BatchChangeProcessor(this);
 		alwaysDelayComponentRemoval = configuration.isAlwaysDelayComponentRemoval();
+		adaptiveComponentStorage = configuration.isAdaptiveComponentStorage();
+		autoTrimFrames = configuration.getAutoTrimFrames();
 
 		configuration.initialize(this, partition.injector, asm);
 	}
@@ -186,6 +195,31 @@ public class World {
 		return cm.getIdentity(entityId);
 	}
 
+	/**
+	 * Packs the entity id with its generation, producing a handle which,
+	 * unlike the id itself, is safe to hold on to across frames.
+	 *
+	 * Requires {@link WorldConfiguration#setTrackEntityGenerations(boolean)}.
+	 *
+	 * @param entityId an active entity.
+	 * @return handle for the current incarnation of the entity id.
+	 * @see #resolve(long)
+	 */
+	public long handle(int entityId) {
+		return em.handle(entityId);
+	}
+
+	/**
+	 * Resolves a handle obtained from {@link #handle(int)}.
+	 *
+	 * @param handle entity handle.
+	 * @return entity id, or {@code -1} if the entity has been removed from
+	 *         the world - even if its id has since been recycled.
+	 */
+	public int resolve(long handle) {
+		return em.resolve(handle);
+	}
+
 	/**
 	 * Returns a manager that takes care of all the entities in the world.
 	 * @return entity manager
@@ -247,6 +281,30 @@ public class World {
 		batchProcessor.delete(entityId);
 	}
 
+	/**
+	 * Delete several entities from the world.
+	 *
+	 * @param entityIds the entities to delete
+	 * @see #delete(int)
+	 */
+	public void delete(IntBag entityIds) {
+		int[] ids = entityIds.getData();
+		for (int i = 0, s = entityIds.size(); s > i; i++) {
+			batchProcessor.delete(ids[i]);
+		}
+	}
+
+	/**
+	 * Delete several entities from the world. Faster than
+	 * {@link #delete(IntBag)} for large numbers of entities.
+	 *
+	 * @param entityIds the entities to delete, one bit per entity id
+	 * @see #delete(int)
+	 */
+	public void delete(BitVector entityIds) {
+		batchProcessor.delete(entityIds);
+	}
+
 	/**
 	 * Create and return a new or reused entity id. Entity is
 	 * automatically added to the world.
@@ -254,6 +312,7 @@ public class World {
 	 * @return assigned entity id, where id >= 0.
 	 */
 	public int create() {
+		checkCreate();
 		int entityId = em.create();
 		batchProcessor.changed.unsafeSet(entityId);
 		return entityId;
@@ -266,6 +325,7 @@ public class World {
 	 * @return assigned entity id, where id >= 0.
 	 */
 	public void createSpecific(int entityID) {
+		checkCreate();
 		em.createEntity(entityID);
 		batchProcessor.changed.unsafeSet(entityID);
 	}
@@ -280,6 +340,7 @@ public class World {
 	 * @return assigned entity id
 	 */
 	public int create(Archetype archetype) {
+		checkCreate();
 		int entityId = em.create();
 
 		archetype.transmuter.perform(entityId);
@@ -290,6 +351,50 @@ public class World {
 		return entityId;
 	}
 
+	/**
+	 * Create several entities from the same archetype.
+	 *
+	 * Cheaper than repeatedly calling {@link #create(Archetype)}: new ids
+	 * are reserved as a contiguous range, which has its composition ids
+	 * and change bits written in bulk.
+	 *
+	 * @param archetype blueprint of new entities
+	 * @param count number of entities to create
+	 * @param out assigned entity ids are appended here
+	 * @return {@code out}, for chaining.
+	 */
+	public IntBag create(Archetype archetype, int count, IntBag out) {
+		checkCreate();
+		int offset = out.size();
+		int recycled = em.create(count, out);
+
+		int[] ids = out.getData();
+		EntityTransmuter.TransmuteOperation transmuter = archetype.transmuter;
+		for (int i = offset, s = offset + count; s > i; i++) {
+			transmuter.perform(ids[i]);
+		}
+
+		for (int i = offset, s = offset + recycled; s > i; i++) {
+			cm.setIdentity(ids[i], archetype.compositionId);
+			batchProcessor.changed.unsafeSet(ids[i]);
+		}
+
+		if (count > recycled) {
+			int from = ids[offset + recycled];
+			int to = from + (count - recycled);
+			cm.setIdentities(from, to, archetype.compositionId);
+			batchProcessor.changed.set(from, to);
+		}
+
+		return out;
+	}
+
+	/** Entity ids can't be handed out while systems run concurrently. */
+	private void checkCreate() {
+		if (batchProcessor.deferral != null)
+			throw new IllegalStateException("Entities can't be created by concurrently running systems.");
+	}
+
 	/**
 	 * Gives you all the systems in this world for possible iteration.
 	 * @return all entity systems in world
@@ -333,6 +438,117 @@ public class World {
 
 			batchProcessor.purgeComponents();
 		}
+
+		if (autoTrimFrames > 0)
+			em.autoTrim(autoTrimFrames);
+	}
+
+	/**
+	 * Relocates entities into the lowest free entity ids, so that all
+	 * entities occupy a contiguous range starting at {@code 0}. Improves
+	 * locality of component access after heavy churn; follow up with
+	 * {@link #trim()} to release the freed memory.
+	 * <p>
+	 * Components, composition ids and subscriptions are moved along with
+	 * the entities, without informing subscription listeners. Relocated
+	 * entities receive a new generation, invalidating their handles.
+	 * {@link com.artemis.annotations.EntityId} fields are rewritten by
+	 * {@link com.artemis.link.EntityLinkManager}, when registered. Systems
+	 * implementing {@link EntityRemap.Listener} are informed; anything
+	 * else holding on to entity ids must translate them through the
+	 * returned remap table.
+	 * </p>
+	 * <p>
+	 * Call between {@link #process()} calls, without pending changes.
+	 * </p>
+	 *
+	 * @return relocated entities.
+	 * @throws IllegalStateException if there are pending changes.
+	 */
+	public EntityRemap defragment() {
+		if (batchProcessor.hasPendingChanges())
+			throw new IllegalStateException("Can't defragment with pending entity changes.");
+
+		EntityRemap remap = em.defragment();
+		if (remap.size() == 0)
+			return remap;
+
+		cm.relocate(remap);
+		asm.relocate(remap);
+		for (int i = 0, s = systemsBag.size(); s > i; i++) {
+			BaseSystem system = systemsBag.get(i);
+			if (system instanceof EntityRemap.Listener)
+				((EntityRemap.Listener) system).remapped(remap);
+		}
+
+		return remap;
+	}
+
+	/**
+	 * Collects all entities currently matching the aspect, without creating
+	 * a subscription. Suited for one-off queries, which would otherwise
+	 * leave a permanently updated {@link EntitySubscription} behind.
+	 * <p>
+	 * Unlike subscriptions, the result reflects composition changes and
+	 * deletions made by the currently processing system. Queries for the
+	 * aspect of an existing subscription read its entities while no changes
+	 * are pending; other queries visit every entity id. Prefer subscriptions
+	 * for queries repeated every frame.
+	 * </p>
+	 *
+	 * @param aspect aspect to match.
+	 * @param out matching entities are appended here, ordered by id.
+	 * @return the {@code out} bag.
+	 */
+	public IntBag query(Aspect.Builder aspect, IntBag out) {
+		return query(aspect.build(this), out);
+	}
+
+	/**
+	 * Collects all entities currently matching the aspect, without creating
+	 * a subscription.
+	 *
+	 * @param aspect aspect to match.
+	 * @param out matching entities are appended here, ordered by id.
+	 * @return the {@code out} bag.
+	 * @see #query(Aspect.Builder, IntBag)
+	 */
+	public IntBag query(Aspect aspect, IntBag out) {
+		EntitySubscription subscription = asm.find(aspect);
+		if (subscription != null && !batchProcessor.hasPendingChanges()) {
+			// subscription is up to date
+			BitVector actives = subscription.getActiveEntityIds();
+			for (int id = actives.nextSetBit(0); id >= 0; id = actives.nextSetBit(id + 1)) {
+				out.add(id);
+			}
+
+			return out;
+		}
+
+		BitVector interest = (subscription != null)
+			? subscription.aspectCache
+			: cm.interest(aspect, new BitVector());
+		for (int id = 0, s = em.getNextID(); s > id; id++) {
+			if (interest.unsafeGet(cm.getIdentity(id))
+					&& !em.isDeleted(id) && !batchProcessor.isDeleted(id)) {
+				out.add(id);
+			}
+		}
+
+		return out;
+	}
+
+	/**
+	 * Shrinks all entity stores after many entities have been deleted,
+	 * if the free entity ids are at the top of the id range. Call between
+	 * {@link #process()} calls.
+	 *
+	 * @return {@code true} if memory was released.
+	 * @see EntityManager#compact()
+	 * @see WorldConfiguration#setAutoTrimFrames(int)
+	 */
+	public boolean trim() {
+		return em.compact();
 	}
 
 	/**
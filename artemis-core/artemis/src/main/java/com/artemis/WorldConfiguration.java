@@ -37,6 +37,10 @@ public final class WorldConfiguration {
 	protected SystemInvocationStrategy invocationStrategy;
 
 	private boolean alwaysDelayComponentRemoval = false;
+	private boolean wideCompositionIdentities = false;
+	private boolean adaptiveComponentStorage = false;
+	private int autoTrimFrames = 0;
+	private boolean trackEntityGenerations = false;
 	private Set<Class<? extends BaseSystem>> registered = new HashSet<Class<? extends BaseSystem>>();
 
 	public WorldConfiguration() {
@@ -234,4 +238,116 @@ public final class WorldConfiguration {
 	public void setAlwaysDelayComponentRemoval(boolean value) {
 		this.alwaysDelayComponentRemoval = value;
 	}
+
+	/**
+	 * Track composition ids as <code>int</code> instead of <code>short</code>.
+	 *
+	 * @see #setWideCompositionIdentities(boolean)
+	 */
+	public boolean isWideCompositionIdentities() {
+		return wideCompositionIdentities;
+	}
+
+	/**
+	 * Track composition ids as <code>int</code> instead of <code>short</code>.
+	 *
+	 * By default, each entity's composition id is stored as a <code>short</code>,
+	 * limiting the world to {@link Short#MAX_VALUE} unique compositions. Worlds
+	 * generating more compositions than that, e.g. from procedural content,
+	 * must enable this; exceeding the limit otherwise throws.
+	 *
+	 * Has no effect on {@link ComponentManager ComponentManagers} passed via
+	 * {@link #setComponentManager(ComponentManager)}.
+	 *
+	 * @param value When {@code true}, composition ids are stored as <code>int</code>.
+	 * @return This instance for chaining.
+	 */
+	public WorldConfiguration setWideCompositionIdentities(boolean value) {
+		this.wideCompositionIdentities = value;
+		return this;
+	}
+
+	/**
+	 * Pick paged or flat storage per component type, by occupancy.
+	 *
+	 * @see #setAdaptiveComponentStorage(boolean)
+	 */
+	public boolean isAdaptiveComponentStorage() {
+		return adaptiveComponentStorage;
+	}
+
+	/**
+	 * Pick paged or flat storage per component type, by occupancy.
+	 *
+	 * By default, each component type holds one reference per entity in the
+	 * world, whether the entity has the component or not. With adaptive
+	 * storage, component types owned by few entities are stored in lazily
+	 * allocated pages instead, re-evaluated each time the world grows.
+	 * Component types annotated with {@link com.artemis.annotations.PagedStorage}
+	 * are always paged.
+	 *
+	 * Has a slight performance cost when accessing components.
+	 *
+	 * @param value When {@code true}, storage is chosen by occupancy.
+	 * @return This instance for chaining.
+	 */
+	public WorldConfiguration setAdaptiveComponentStorage(boolean value) {
+		this.adaptiveComponentStorage = value;
+		return this;
+	}
+
+	/**
+	 * Frames with low entity usage before automatically trimming.
+	 *
+	 * @see #setAutoTrimFrames(int)
+	 */
+	public int getAutoTrimFrames() {
+		return autoTrimFrames;
+	}
+
+	/**
+	 * Automatically {@link World#trim() trim} entity stores after mass
+	 * deletion.
+	 *
+	 * Entity stores never shrink by default. When enabled, the world trims
+	 * itself once no more than a quarter of its entity capacity has been
+	 * used for the given number of consecutive frames; trimming leaves half
+	 * of the capacity free.
+	 *
+	 * @param frames Consecutive frames before trimming, {@code 0} to disable.
+	 * @return This instance for chaining.
+	 */
+	public WorldConfiguration setAutoTrimFrames(int frames) {
+		if (frames < 0)
+			throw new IllegalArgumentException("frames must not be negative: " + frames);
+
+		this.autoTrimFrames = frames;
+		return this;
+	}
+
+	/**
+	 * Count how many times each entity id is recycled.
+	 *
+	 * @see #setTrackEntityGenerations(boolean)
+	 */
+	public boolean isTrackEntityGenerations() {
+		return trackEntityGenerations;
+	}
+
+	/**
+	 * Count how many times each entity id is recycled, enabling
+	 * {@link World#handle(int)} and {@link World#resolve(long)}.
+	 *
+	 * Costs one <code>int</code> per entity id.
+	 *
+	 * Has no effect on {@link EntityManager EntityManagers} passed via
+	 * {@link #setEntityManager(EntityManager)}.
+	 *
+	 * @param value When {@code true}, entity generations are tracked.
+	 * @return This instance for chaining.
+	 */
+	public WorldConfiguration setTrackEntityGenerations(boolean value) {
+		this.trackEntityGenerations = value;
+		return this;
+	}
 }
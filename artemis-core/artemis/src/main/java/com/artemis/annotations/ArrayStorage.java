@@ -0,0 +1,23 @@
+package com.artemis.annotations;
+
+import com.artemis.ArrayComponentMapper;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Stores the primitive fields of this component type in one array per
+ * field, indexed by entity id, instead of one object per entity.
+ * <p>
+ * Only {@code int}, {@code long}, {@code float}, {@code double} and
+ * {@code boolean} fields are supported. Mappers of the type are
+ * {@link ArrayComponentMapper ArrayComponentMappers}.
+ * </p>
+ *
+ * @see ArrayComponentMapper
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ArrayStorage {}
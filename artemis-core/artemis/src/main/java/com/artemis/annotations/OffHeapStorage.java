@@ -0,0 +1,29 @@
+package com.artemis.annotations;
+
+import com.artemis.OffHeapComponentMapper;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Stores the primitive fields of this component type outside of the java
+ * heap, in pages of direct memory with a fixed stride per entity. Keeps
+ * large numbers of components out of reach of the garbage collector.
+ * <p>
+ * Only {@code byte}, {@code short}, {@code char}, {@code int},
+ * {@code long}, {@code float}, {@code double} and {@code boolean} fields
+ * are supported. Mappers of the type are
+ * {@link OffHeapComponentMapper OffHeapComponentMappers}. Memory is freed
+ * by {@link com.artemis.World#dispose()}.
+ * </p>
+ * <p>
+ * Not available under GWT.
+ * </p>
+ *
+ * @see OffHeapComponentMapper
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface OffHeapStorage {}
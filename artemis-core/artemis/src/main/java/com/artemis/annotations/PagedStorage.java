@@ -0,0 +1,20 @@
+package com.artemis.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Stores components of this type in lazily allocated pages of entity ids,
+ * instead of one reference per entity in the world.
+ * <p>
+ * Intended for component types only owned by a small share of all
+ * entities. Access costs an extra array lookup.
+ * </p>
+ *
+ * @see com.artemis.WorldConfiguration#setAdaptiveComponentStorage(boolean)
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface PagedStorage {}
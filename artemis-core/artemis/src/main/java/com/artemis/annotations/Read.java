@@ -0,0 +1,37 @@
+package com.artemis.annotations;
+
+import com.artemis.Component;
+
+import com.artemis.*;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Declares read-only access to component types, allowing
+ * {@link ParallelInvocationStrategy} to run the system concurrently with
+ * systems that do not write to the same types.</p>
+ *
+ * <p>On {@link ComponentMapper} fields, the mapper's component type is
+ * read, {@link #value()} is ignored. On systems, {@link #value()} lists
+ * types read by other means.</p>
+ *
+ * <p>Components matched by the system's aspect are always considered read.</p>
+ *
+ * @see Write
+ * @see ParallelInvocationStrategy
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.TYPE})
+@Documented
+@UnstableApi
+public @interface Read {
+
+	/**
+	 * @return types read, only used on systems.
+	 */
+	Class<? extends Component>[] value() default {};
+}
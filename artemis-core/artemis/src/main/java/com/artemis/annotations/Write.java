@@ -0,0 +1,38 @@
+package com.artemis.annotations;
+
+import com.artemis.Component;
+
+import com.artemis.*;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Declares write access to component types: modifying, creating or
+ * removing components. {@link ParallelInvocationStrategy} never runs the
+ * system concurrently with other systems accessing the same types.</p>
+ *
+ * <p>On {@link ComponentMapper} fields, the mapper's component type is
+ * written, {@link #value()} is ignored. On systems, {@link #value()} lists
+ * types written by other means.</p>
+ *
+ * <p>Once a system declares any access with {@link Read} or {@link Write},
+ * its undeclared mapper fields are considered written.</p>
+ *
+ * @see Read
+ * @see ParallelInvocationStrategy
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.TYPE})
+@Documented
+@UnstableApi
+public @interface Write {
+
+	/**
+	 * @return types written, only used on systems.
+	 */
+	Class<? extends Component>[] value() default {};
+}
@@ -20,7 +20,7 @@ import static com.artemis.Aspect.all;
  *
  */
 @SkipWire
-public class EntityLinkManager extends BaseEntitySystem {
+public class EntityLinkManager extends BaseEntitySystem implements EntityRemap.Listener {
 
 	final Bag<LinkSite> linkSites = new Bag<LinkSite>();
 	final Bag<LinkSite> decoratedLinkSites = new Bag<LinkSite>();
@@ -64,6 +64,14 @@ public class EntityLinkManager extends BaseEntitySystem {
 		}
 	}
 
+	/** Rewrites {@link com.artemis.annotations.EntityId} fields of all link sites. */
+	@Override
+	public void remapped(EntityRemap remap) {
+		for (LinkSite site : linkSites) {
+			site.remap(remap);
+		}
+	}
+
 	private void process(Bag<LinkSite> sites) {
 		for (LinkSite ls : sites) {
 			ls.process();
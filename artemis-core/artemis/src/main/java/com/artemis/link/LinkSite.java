@@ -76,6 +76,9 @@ abstract class LinkSite implements EntitySubscription.SubscriptionListener {
 
 	protected abstract void check(int id);
 
+	/** Rewrites links of relocated entities; members are already relocated. */
+	protected abstract void remap(EntityRemap remap);
+
 	protected void process() {
 		if (CHECK_SOURCE_AND_TARGETS != policy)
 			return;
@@ -1,8 +1,10 @@
 package com.artemis.link;
 
 import com.artemis.ComponentType;
+import com.artemis.EntityRemap;
 import com.artemis.World;
 import com.artemis.annotations.LinkPolicy;
+import com.artemis.utils.IntBag;
 import com.artemis.utils.reflect.Field;
 
 class MultiLinkSite extends LinkSite {
@@ -21,6 +23,17 @@ class MultiLinkSite extends LinkSite {
 		fieldMutator.validate(id, collection, listener);
 	}
 
+	@Override
+	protected void remap(EntityRemap remap) {
+		IntBag entities = subscription.getEntities();
+		int[] ids = entities.getData();
+		for (int i = 0, s = entities.size(); s > i; i++) {
+			Object collection = fieldMutator.read(mapper.get(ids[i]), field);
+			if (collection instanceof IntBag)
+				remap.remap((IntBag) collection);
+		}
+	}
+
 	@Override
 	protected void insert(int id) {
 		if (listener != null)
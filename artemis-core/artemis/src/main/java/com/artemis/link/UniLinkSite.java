@@ -1,6 +1,8 @@
 package com.artemis.link;
 
+import com.artemis.Component;
 import com.artemis.ComponentType;
+import com.artemis.EntityRemap;
 import com.artemis.World;
 import com.artemis.annotations.LinkPolicy;
 import com.artemis.utils.IntBag;
@@ -49,6 +51,31 @@ class UniLinkSite extends LinkSite {
 		}
 	}
 
+	@Override
+	protected void remap(EntityRemap remap) {
+		for (int i = 0, s = remap.size(); s > i; i++) {
+			int from = remap.getOldId(i);
+			if (sourceToTarget.size() > from) {
+				sourceToTarget.set(remap.getNewId(i), sourceToTarget.get(from));
+				sourceToTarget.set(from, -1);
+			}
+		}
+
+		IntBag entities = subscription.getEntities();
+		int[] ids = entities.getData();
+		for (int i = 0, s = entities.size(); s > i; i++) {
+			int id = ids[i];
+			Component component = mapper.get(id);
+			int target = fieldMutator.read(component, field);
+			int remapped = remap.get(target);
+			if (remapped != target)
+				fieldMutator.write(remapped, component, field);
+
+			if (sourceToTarget.size() > id)
+				sourceToTarget.set(id, remap.get(sourceToTarget.get(id)));
+		}
+	}
+
 	@Override
 	protected void insert(int id) {
 		int target = fieldMutator.read(mapper.get(id), field);
@@ -6,8 +6,10 @@ import java.util.HashMap;
 import java.util.Map;
 
 import com.artemis.BaseSystem;
+import com.artemis.EntityRemap;
 import com.artemis.EntitySubscription;
 import com.artemis.utils.Bag;
+import com.artemis.utils.BitVector;
 import com.artemis.utils.ImmutableBag;
 import com.artemis.utils.ImmutableIntBag;
 import com.artemis.utils.IntBag;
@@ -21,27 +23,38 @@ import com.artemis.utils.IntBag;
  * <p>
  * A entity can be assigned to more than one group.
  * </p>
+ * <p>
+ * Members of each group are tracked in a {@link BitVector}, making
+ * membership checks constant time. Each entity remembers its position
+ * in the entities of its groups, so removing it from a group is constant
+ * time too: the group's last entity takes its place.
+ * </p>
+ * <p>
+ * Bags returned by {@link #getEntities(String)} and {@link #getGroups(int)}
+ * are live, reflecting all later changes.
+ * </p>
  *
  * @author Arni Arent
  */
-public class GroupManager extends BaseSystem {
+public class GroupManager extends BaseSystem implements EntityRemap.Listener {
     private static final ImmutableBag<String> EMPTY_BAG = new Bag<>();
 
     /**
-     * All entities and groups mapped with group names as key.
+     * All groups mapped with group names as key.
      */
-    private final Map<String, IntBag> identitiesByGroup;
+    private final Map<String, Group> groupsByName;
     /**
-     * All entities and groups mapped with entityID as key.
+     * Groups of each entity, by entityID; {@code null} until the entity
+     * is first added to a group.
      */
-    private final Map<Integer, Bag<String>> groupsByEntity;
+    private final Bag<Memberships> groupsByEntity;
 
     /**
      * Creates a new GroupManager instance.
      */
     public GroupManager() {
-        identitiesByGroup = new HashMap<>();
-        groupsByEntity = new HashMap<>();
+        groupsByName = new HashMap<>();
+        groupsByEntity = new Bag<>(Memberships.class);
     }
 
     @Override
@@ -63,6 +76,29 @@ public class GroupManager extends BaseSystem {
                 });
     }
 
+    @Override
+    public void remapped(EntityRemap remap) {
+        for (int i = 0, s = remap.size(); s > i; i++) {
+            int oldId = remap.getOldId(i);
+            int newId = remap.getNewId(i);
+
+            Memberships moved = groupsByEntity.safeGet(oldId);
+            if (moved == null || moved.groups.isEmpty())
+                continue;
+
+            for (int j = 0, t = moved.groups.size(); t > j; j++) {
+                Group group = moved.groups.get(j);
+                group.members.unsafeClear(oldId);
+                group.members.set(newId);
+                group.entities.set(moved.slots.get(j), newId);
+            }
+
+            // swap, reusing the emptied memberships of the free id
+            groupsByEntity.set(oldId, groupsByEntity.safeGet(newId));
+            groupsByEntity.set(newId, moved);
+        }
+    }
+
     /**
      * Set the group of the entity.
      *
@@ -70,23 +106,19 @@ public class GroupManager extends BaseSystem {
      * @param entityID     entity to add into the group
      */
     public void add(int entityID, String group) {
-        IntBag identities = identitiesByGroup.get(group);
-        if (identities == null) {
-            identities = new IntBag();
-            identitiesByGroup.put(group, identities);
-        }
-        if (!identities.contains(entityID)) {
-            identities.add(entityID);
-        }
+        Group g = intern(group);
+        if (g.members.get(entityID))
+            return;
 
-        Bag<String> groups = groupsByEntity.get(entityID);
-        if (groups == null) {
-            groups = new Bag<>();
-            groupsByEntity.put(entityID, groups);
-        }
-        if (!groups.contains(group)) {
-            groups.add(group);
+        Memberships memberships = groupsByEntity.safeGet(entityID);
+        if (memberships == null) {
+            memberships = new Memberships();
+            groupsByEntity.set(entityID, memberships);
         }
+
+        memberships.add(g, g.entities.size());
+        g.members.set(entityID);
+        g.entities.add(entityID);
     }
 
     /**
@@ -137,17 +169,12 @@ public class GroupManager extends BaseSystem {
      * @param group group to remove the entity from
      */
     public void remove(int entityID, String group) {
-        final IntBag identities = identitiesByGroup.get(group);
-        if (identities != null) {
-            identities.removeValue(entityID);
-        }
+        Group g = groupsByName.get(group);
+        if (g == null || !g.members.get(entityID))
+            return;
 
-        Bag<String> groups = groupsByEntity.get(entityID);
-        if (groups != null) {
-            groups.remove(group);
-            if (groups.size() == 0)
-                groupsByEntity.remove(entityID);
-        }
+        Memberships memberships = groupsByEntity.get(entityID);
+        leave(entityID, memberships, memberships.indexOf(g));
     }
 
     /**
@@ -197,16 +224,13 @@ public class GroupManager extends BaseSystem {
      * @param entityID the entity to remove
      */
     public void removeFromAllGroups(int entityID) {
-        Bag<String> groups = groupsByEntity.get(entityID);
-        if (groups == null)
+        Memberships memberships = groupsByEntity.safeGet(entityID);
+        if (memberships == null)
             return;
-        for (int i = 0, s = groups.size(); s > i; i++) {
-            IntBag identities = identitiesByGroup.get(groups.get(i));
-            if (identities != null) {
-                identities.removeValue(entityID);
-            }
+
+        for (int i = memberships.groups.size() - 1; i >= 0; i--) {
+            leave(entityID, memberships, i);
         }
-        groupsByEntity.remove(entityID);
     }
 
     /**
@@ -216,21 +240,11 @@ public class GroupManager extends BaseSystem {
      * @return read-only bag of entities belonging to the group
      */
     public ImmutableIntBag getEntities(String group) {
-        IntBag entities = identitiesByGroup.get(group);
-        if (entities == null) {
-            entities = new IntBag();
-            identitiesByGroup.put(group, entities);
-        }
-        return entities;
+        return intern(group).entities;
     }
 
     public ImmutableIntBag getEntityIds(final String group) {
-        IntBag identities = identitiesByGroup.get(group);
-        if (identities == null) {
-            identities = new IntBag();
-            identitiesByGroup.put(group, identities);
-        }
-        return identities;
+        return intern(group).entities;
     }
 
     /**
@@ -241,8 +255,8 @@ public class GroupManager extends BaseSystem {
      * @return the groups the entity belongs to.
      */
     public ImmutableBag<String> getGroups(int entityID) {
-        Bag<String> groups = groupsByEntity.get(entityID);
-        return groups != null ? groups : EMPTY_BAG;
+        Memberships memberships = groupsByEntity.safeGet(entityID);
+        return (memberships != null) ? memberships.names : EMPTY_BAG;
     }
 
     /**
@@ -252,7 +266,8 @@ public class GroupManager extends BaseSystem {
      * @return true. if it is in any group, false if none
      */
     public boolean isInAnyGroup(int entityID) {
-        return getGroups(entityID).size() > 0;
+        Memberships memberships = groupsByEntity.safeGet(entityID);
+        return memberships != null && !memberships.groups.isEmpty();
     }
 
     /**
@@ -263,19 +278,11 @@ public class GroupManager extends BaseSystem {
      * @return true if the entity is in the supplied group, false if not
      */
     public boolean isInGroup(int entityID, String group) {
-        if (group != null) {
-            Bag<String> bag = groupsByEntity.get(entityID);
-            if (bag != null) {
-                Object[] groups = bag.getData();
-                for (int i = 0, s = bag.size(); s > i; i++) {
-                    String g = (String) groups[i];
-                    if (group.equals(g)) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+        if (group == null)
+            return false;
+
+        Group g = groupsByName.get(group);
+        return g != null && g.members.get(entityID);
     }
 
     void deleted(IntBag entities) {
@@ -284,4 +291,76 @@ public class GroupManager extends BaseSystem {
             removeFromAllGroups(ids[i]);
         }
     }
+
+    /**
+     * Removes the entity from one of its groups, moving the group's last
+     * entity into the freed position.
+     *
+     * @param index index of the group among the entity's memberships.
+     */
+    private void leave(int entityID, Memberships memberships, int index) {
+        Group group = memberships.groups.get(index);
+        int slot = memberships.slots.get(index);
+        memberships.remove(index);
+
+        group.members.unsafeClear(entityID);
+        group.entities.removeIndex(slot);
+        if (group.entities.size() > slot) {
+            Memberships moved = groupsByEntity.get(group.entities.get(slot));
+            moved.slots.set(moved.indexOf(group), slot);
+        }
+    }
+
+    /**
+     * @return the group by name, created if new.
+     */
+    private Group intern(String name) {
+        Group group = groupsByName.get(name);
+        if (group == null) {
+            group = new Group(name);
+            world.getEntityManager().registerEntityStore(group.members);
+            groupsByName.put(name, group);
+        }
+        return group;
+    }
+
+    /** Members of a single group. */
+    private static final class Group {
+        private final String name;
+        private final BitVector members = new BitVector();
+        private final IntBag entities = new IntBag();
+
+        Group(String name) {
+            this.name = name;
+        }
+    }
+
+    /** Groups of a single entity. */
+    private static final class Memberships {
+        private final Bag<Group> groups = new Bag<>(Group.class, 4);
+        /** Name of each group. */
+        private final Bag<String> names = new Bag<>(String.class, 4);
+        /** Position of the entity in the entities of each group. */
+        private final IntBag slots = new IntBag(4);
+
+        void add(Group group, int slot) {
+            groups.add(group);
+            names.add(group.name);
+            slots.add(slot);
+        }
+
+        int indexOf(Group group) {
+            for (int i = 0, s = groups.size(); s > i; i++) {
+                if (groups.get(i) == group)
+                    return i;
+            }
+            return -1;
+        }
+
+        void remove(int index) {
+            groups.remove(index);
+            names.remove(index);
+            slots.removeIndex(index);
+        }
+    }
 }
@@ -0,0 +1,158 @@
+package com.artemis.systems;
+
+import com.artemis.*;
+import com.artemis.utils.IntBag;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Iterates over {@link EntitySubscription} member entities on several
+ * threads.
+ * <p>
+ * Entities are split into chunks, processed on a {@link ForkJoinPool}.
+ * Chunks are whole multiples of a cache line worth of entity ids.
+ * Subscriptions with fewer entities than a chunk are processed on the
+ * calling thread.
+ * </p>
+ * <p>
+ * {@link #process(int)} runs concurrently, and must only touch the
+ * processed entity's components. Structural changes - creating or removing
+ * components, transmuting or deleting entities - are recorded per chunk
+ * and applied in entity order after all chunks are done; until then,
+ * {@link ComponentMapper#has(int)} reports the composition from before
+ * processing. Components created while processing are new instances,
+ * even when pooled. Entities can't be created while processing.
+ * </p>
+ *
+ * @see ConcurrentChanges
+ */
+public abstract class ParallelIteratingSystem extends BaseEntitySystem {
+	/** Entity ids per 64 byte cache line. */
+	public static final int CACHE_LINE_IDS = 16;
+	public static final int DEFAULT_CHUNK_SIZE = 64 * CACHE_LINE_IDS;
+
+	private final ForkJoinPool pool;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	private ConcurrentChanges changes;
+	private IntBag actives;
+
+	/**
+	 * Creates a new ParallelIteratingSystem, running on a pool shared by
+	 * all parallel iterating systems.
+	 *
+	 * @param aspect
+	 *			the aspect to match entities
+	 */
+	public ParallelIteratingSystem(Aspect.Builder aspect) {
+		this(aspect, DefaultPool.INSTANCE);
+	}
+
+	/**
+	 * @param aspect
+	 *			the aspect to match entities
+	 * @param pool
+	 *			runs chunks of entities
+	 */
+	public ParallelIteratingSystem(Aspect.Builder aspect, ForkJoinPool pool) {
+		super(aspect);
+		this.pool = pool;
+	}
+
+	public ParallelIteratingSystem() {
+		this(DefaultPool.INSTANCE);
+	}
+
+	/**
+	 * @param pool
+	 *			runs chunks of entities
+	 */
+	public ParallelIteratingSystem(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	protected void setWorld(World world) {
+		super.setWorld(world);
+		changes = new ConcurrentChanges(world);
+	}
+
+	/**
+	 * Process a entity this system is interested in. Called concurrently.
+	 *
+	 * @param entityId
+	 *			the entity to process
+	 */
+	protected abstract void process(int entityId);
+
+	/** @inheritDoc */
+	@Override
+	protected final void processSystem() {
+		actives = subscription.getEntities();
+		int count = actives.size();
+		if (chunkSize >= count) {
+			int[] ids = actives.getData();
+			for (int i = 0; count > i; i++) {
+				process(ids[i]);
+			}
+			return;
+		}
+
+		int chunks = (count + chunkSize - 1) / chunkSize;
+		changes.begin(chunks);
+		try {
+			pool.invoke(new Chunks(0, chunks));
+		} finally {
+			changes.end();
+			actives = null;
+		}
+	}
+
+	/**
+	 * @param chunkSize entities per task, rounded up to whole cache lines.
+	 */
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize < 1)
+			throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+
+		this.chunkSize = (chunkSize + CACHE_LINE_IDS - 1) / CACHE_LINE_IDS * CACHE_LINE_IDS;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/** Range of chunks, split in halves until a single chunk remains. */
+	private final class Chunks extends RecursiveAction implements Runnable {
+		private final int from;
+		private final int to;
+
+		Chunks(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new Chunks(from, mid), new Chunks(mid, to));
+			} else {
+				changes.run(from, this);
+			}
+		}
+
+		@Override
+		public void run() {
+			int[] ids = actives.getData();
+			for (int i = from * chunkSize, s = Math.min(actives.size(), i + chunkSize); s > i; i++) {
+				process(ids[i]);
+			}
+		}
+	}
+
+	private static final class DefaultPool {
+		static final ForkJoinPool INSTANCE = new ForkJoinPool();
+	}
+}
@@ -352,6 +352,20 @@ public class Bag<E> implements ImmutableBag<E> {
 		}
 	}
 
+	/**
+	 * Shrinks the backing array to hold the given number of elements, if
+	 * larger. Elements beyond the new capacity are discarded.
+	 *
+	 * @param capacity
+	 *			new capacity
+	 */
+	public void trim(int capacity) {
+		if (capacity < data.length) {
+			data = Arrays.copyOf(data, capacity);
+			size = Math.min(size, capacity);
+		}
+	}
+
 	/**
 	 * Removes all of the elements from this bag.
 	 * <p>
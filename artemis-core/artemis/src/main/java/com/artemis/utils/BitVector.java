@@ -37,6 +37,14 @@ import java.util.Arrays;
  */
 public class BitVector {
 
+	/**
+	 * Vectors at least this many words long are scanned four words at a
+	 * time by {@link #intersects(BitVector)} and {@link #containsAll(BitVector)},
+	 * checking once per block; shorter vectors, such as component bits,
+	 * exit on the first word deciding the outcome.
+	 */
+	private static final int BLOCK_MIN_WORDS = 16;
+
 	long[] words = {0};
 
 	public BitVector() {
@@ -72,6 +80,31 @@ public class BitVector {
 		words[word] |= 1L << index;
 	}
 
+	/** Sets all bits in the range, a word at a time.
+	 *
+	 * @param fromIndex index of the first bit to set
+	 * @param toIndex index after the last bit to set
+	 * @throws ArrayIndexOutOfBoundsException if fromIndex < 0 */
+	public void set(int fromIndex, int toIndex) {
+		if (fromIndex >= toIndex)
+			return;
+
+		int startWord = fromIndex >>> 6;
+		int endWord = (toIndex - 1) >>> 6;
+		checkCapacity(endWord);
+
+		long firstMask = -1L << fromIndex;
+		long lastMask = -1L >>> -toIndex;
+		if (startWord == endWord) {
+			words[startWord] |= firstMask & lastMask;
+		} else {
+			words[startWord] |= firstMask;
+			for (int i = startWord + 1; endWord > i; i++)
+				words[i] = -1L;
+			words[endWord] |= lastMask;
+		}
+	}
+
 	/** @param index the index of the bit to set
 	 * @throws ArrayIndexOutOfBoundsException if index < 0 */
 	public void set(int index, boolean value) {
@@ -105,6 +138,22 @@ public class BitVector {
 		}
 	}
 
+	/** @param wordIndex index of the word, covering bits <code>64 * wordIndex</code>
+	 *                  through <code>64 * wordIndex + 63</code>
+	 * @return the 64 bits of the word
+	 * @throws ArrayIndexOutOfBoundsException if wordIndex < 0 or wordIndex >= words.length */
+	public long unsafeGetWord(int wordIndex) {
+		return words[wordIndex];
+	}
+
+	/** @param wordIndex index of the word, covering bits <code>64 * wordIndex</code>
+	 *                  through <code>64 * wordIndex + 63</code>
+	 * @param word new value of the word
+	 * @throws ArrayIndexOutOfBoundsException if wordIndex < 0 or wordIndex >= words.length */
+	public void unsafeSetWord(int wordIndex, long word) {
+		words[wordIndex] = word;
+	}
+
 	/** @param index the index of the bit to flip */
 	public void flip(int index) {
 		final int word = index >>> 6;
@@ -123,6 +172,18 @@ public class BitVector {
 		checkCapacity(bits >>> 6);
 	}
 
+	/**
+	 * Shrinks the backing array to the size required by
+	 * {@link #ensureCapacity(int)}. Bits beyond the capacity are discarded.
+	 *
+	 * @param bits number of bits to accomodate
+	 */
+	public void trim(int bits) {
+		int len = (bits >>> 6) + 1;
+		if (len < words.length)
+			words = Arrays.copyOf(words, len);
+	}
+
 	private void checkCapacity(int len) {
 		if (len >= words.length) {
 			long[] newBits = new long[len + 1];
@@ -237,25 +298,27 @@ public class BitVector {
 	 * also had the value true.
 	 * @param other a bit set */
 	public void and(BitVector other) {
-//		int commonWords = Math.min(words.length, other.words.length);
-		for (int i = 0; words.length > i; i++) {
-			words[i] &= other.words[i];
+		long[] words = this.words;
+		long[] otherWords = other.words;
+		int commonWords = Math.min(words.length, otherWords.length);
+		for (int i = 0; commonWords > i; i++) {
+			words[i] &= otherWords[i];
 		}
 
-//		if (words.length > commonWords) {
-//			for (int i = commonWords, s = words.length; s > i; i++) {
-//				words[i] = 0L;
-//			}
-//		}
+		for (int i = commonWords, s = words.length; s > i; i++) {
+			words[i] = 0L;
+		}
 	}
 
 	/** Clears all of the bits in this bit set whose corresponding bit is set in the specified bit set.
 	 *
 	 * @param other a bit set */
 	public void andNot(BitVector other) {
-//		int commonWords = Math.min(words.length, other.words.length);
-		for (int i = 0; words.length > i; i++) {
-			words[i] &= ~other.words[i];
+		long[] words = this.words;
+		long[] otherWords = other.words;
+		int commonWords = Math.min(words.length, otherWords.length);
+		for (int i = 0; commonWords > i; i++) {
+			words[i] &= ~otherWords[i];
 		}
 	}
 
@@ -264,17 +327,14 @@ public class BitVector {
 	 * value true.
 	 * @param other a bit set */
 	public void or(BitVector other) {
-//		int commonWords = Math.min(words.length, other.words.length);
-		for (int i = 0; words.length > i; i++) {
-			words[i] |= other.words[i];
-		}
+		long[] otherWords = other.words;
+		if (otherWords.length > words.length)
+			checkCapacity(otherWords.length - 1);
 
-//		if (commonWords < other.words.length) {
-//			checkCapacity(other.words.length);
-//			for (int i = commonWords, s = other.words.length; s > i; i++) {
-//				words[i] = other.words[i];
-//			}
-//		}
+		long[] words = this.words;
+		for (int i = 0, s = otherWords.length; s > i; i++) {
+			words[i] |= otherWords[i];
+		}
 	}
 
 	/** Performs a logical <b>XOR</b> of this bit set with the bit set argument. This bit set is modified so that a bit in it has
@@ -285,18 +345,14 @@ public class BitVector {
 	 * </ul>
 	 * @param other */
 	public void xor(BitVector other) {
-//		int commonWords = Math.min(words.length, other.words.length);
+		long[] otherWords = other.words;
+		if (otherWords.length > words.length)
+			checkCapacity(otherWords.length - 1);
 
-		for (int i = 0; words.length > i; i++) {
-			words[i] ^= other.words[i];
+		long[] words = this.words;
+		for (int i = 0, s = otherWords.length; s > i; i++) {
+			words[i] ^= otherWords[i];
 		}
-
-//		if (commonWords < other.words.length) {
-//			checkCapacity(other.words.length);
-//			for (int i = commonWords, s = other.words.length; s > i; i++) {
-//				words[i] = other.words[i];
-//			}
-//		}
 	}
 
 	/** Returns true if the specified BitVector has any bits set to true that are also set to true in this BitVector.
@@ -306,7 +362,18 @@ public class BitVector {
 	public boolean intersects(BitVector other) {
 		long[] bits = this.words;
 		long[] otherBits = other.words;
-		for (int i = 0, s = Math.min(bits.length, otherBits.length); s > i; i++) {
+		int s = Math.min(bits.length, otherBits.length);
+		int i = 0;
+		for (int blocks = (s >= BLOCK_MIN_WORDS) ? s & ~3 : 0; blocks > i; i += 4) {
+			long common = (bits[i] & otherBits[i])
+				| (bits[i + 1] & otherBits[i + 1])
+				| (bits[i + 2] & otherBits[i + 2])
+				| (bits[i + 3] & otherBits[i + 3]);
+			if (common != 0) {
+				return true;
+			}
+		}
+		for (; s > i; i++) {
 			if ((bits[i] & otherBits[i]) != 0) {
 				return true;
 			}
@@ -333,8 +400,19 @@ public class BitVector {
 			}
 		}
 
-		for (int i = 0, s = Math.min(bitsLength, otherBitsLength); s > i; i++) {
-			if ((bits[i] & otherBits[i]) != otherBits[i]) {
+		int s = Math.min(bitsLength, otherBitsLength);
+		int i = 0;
+		for (int blocks = (s >= BLOCK_MIN_WORDS) ? s & ~3 : 0; blocks > i; i += 4) {
+			long missing = (otherBits[i] & ~bits[i])
+				| (otherBits[i + 1] & ~bits[i + 1])
+				| (otherBits[i + 2] & ~bits[i + 2])
+				| (otherBits[i + 3] & ~bits[i + 3]);
+			if (missing != 0) {
+				return false;
+			}
+		}
+		for (; s > i; i++) {
+			if ((otherBits[i] & ~bits[i]) != 0) {
 				return false;
 			}
 		}
@@ -358,16 +436,17 @@ public class BitVector {
 	 * @return Same as out
 	 */
 	public IntBag toIntBag(IntBag out) {
-		if (isEmpty()) {
-			out.setSize(0);
-			return out;
-		}
-
-		int count = prepareBag(out, 1);
-
 		int[] data = out.getData();
-		for (int i = 0, index = 0; count > index; i++) {
+		int index = 0;
+		for (int i = 0, s = words.length; s > i; i++) {
 			long bitset = words[i];
+			if (bitset == 0L)
+				continue;
+
+			int end = index + Long.bitCount(bitset);
+			if (end > data.length)
+				data = grow(out, end);
+
 			int wordBits = i << 6;
 			while (bitset != 0) {
 				long t = bitset & -bitset;
@@ -378,6 +457,7 @@ public class BitVector {
 			}
 		}
 
+		out.setSize(index);
 		return out;
 	}
 
@@ -391,16 +471,17 @@ public class BitVector {
 	 * @return Same as out
 	 */
 	public IntBag toIntBagIdCid(ComponentManager cm, IntBag out) {
-		if (isEmpty()) {
-			out.setSize(0);
-			return out;
-		}
-
-		int count = prepareBag(out, 2);
-
 		int[] data = out.getData();
-		for (int i = 0, index = 0; count > index; i++) {
+		int index = 0;
+		for (int i = 0, s = words.length; s > i; i++) {
 			long bitset = words[i];
+			if (bitset == 0L)
+				continue;
+
+			int end = index + 2 * Long.bitCount(bitset);
+			if (end > data.length)
+				data = grow(out, end);
+
 			int wordBits = i << 6;
 			while (bitset != 0) {
 				long t = bitset & -bitset;
@@ -412,21 +493,26 @@ public class BitVector {
 			}
 		}
 
+		out.setSize(index);
 		return out;
 	}
 
-	private int prepareBag(IntBag out, int elementsPerEntry) {
-		int count = elementsPerEntry * cardinality();
-		out.ensureCapacity(count);
-		out.setSize(count);
-		return count;
+	/**
+	 * Grows the backing array of {@code out} to hold at least
+	 * {@code minCapacity} elements, at least doubling its capacity.
+	 *
+	 * @return the new backing array
+	 */
+	static int[] grow(IntBag out, int minCapacity) {
+		out.ensureCapacity(Math.max(minCapacity, 2 * out.getData().length) - 1);
+		return out.getData();
 	}
 
 	@Override
 	public int hashCode() {
-		final int word = length() >>> 6;
+		final int wordCount = (length() + 63) >>> 6;
 		int hash = 0;
-		for (int i = 0; word >= i; i++) {
+		for (int i = 0; wordCount > i; i++) {
 			hash = 127 * hash + (int) (words[i] ^ (words[i] >>> 32));
 		}
 		return hash;
@@ -130,6 +130,22 @@ public class IntBag implements ImmutableIntBag {
 		return data[index];
 	}
 
+	/**
+	 * Returns the element at the specified position in Bag, without
+	 * checking it against the size of the bag.
+	 *
+	 * @param index
+	 *			index of the element to return
+	 *
+	 * @return the element at the specified position in bag
+	 *
+	 * @throws ArrayIndexOutOfBoundsException if the index is outside
+	 *         the backing array ({@code index < 0 || index >= getCapacity()})
+	 */
+	public int unsafeGet(int index) {
+		return data[index];
+	}
+
 	/**
 	 * Returns the number of elements in this bag.
 	 * 
@@ -201,6 +217,22 @@ public class IntBag implements ImmutableIntBag {
 		}
 	}
 
+	/**
+	 * Set element at specified index in the bag, without growing
+	 * the bag or updating its size.
+	 *
+	 * @param index
+	 *			position of element
+	 * @param value
+	 *			the element
+	 *
+	 * @throws ArrayIndexOutOfBoundsException if the index is outside
+	 *         the backing array ({@code index < 0 || index >= getCapacity()})
+	 */
+	public void unsafeSet(int index, int value) {
+		data[index] = value;
+	}
+
 	/**
 	 * Set element at specified index in the bag.
 	 * 
@@ -239,6 +271,20 @@ public class IntBag implements ImmutableIntBag {
 		}
 	}
 
+	/**
+	 * Shrinks the backing array to hold the given number of elements, if
+	 * larger. Elements beyond the new capacity are discarded.
+	 *
+	 * @param capacity
+	 *			new capacity
+	 */
+	public void trim(int capacity) {
+		if (capacity < data.length) {
+			data = Arrays.copyOf(data, capacity);
+			size = Math.min(size, capacity);
+		}
+	}
+
 	/**
 	 * Removes all of the elements from this bag.
 	 * <p>
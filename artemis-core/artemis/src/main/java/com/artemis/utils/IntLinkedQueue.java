@@ -0,0 +1,217 @@
+package com.artemis.utils;
+
+import java.util.Arrays;
+
+
+/**
+ * First-in, first-out queue of distinct, non-negative ints, supporting
+ * constant time removal of arbitrary values.
+ * <p>
+ * Values double as indices into the backing arrays, linking each value
+ * to its neighbours; memory is proportional to the largest value ever
+ * added, not to the number of values in the queue. Intended for entity
+ * ids and similarly dense ranges.
+ * </p>
+ *
+ * @see com.artemis.EntityManager
+ */
+public class IntLinkedQueue {
+	private static final int NONE = -1;
+	private static final int ABSENT = -2;
+
+	/** Next value in queue, or {@link #NONE} for the tail. */
+	private int[] next;
+	/** Previous value in queue, {@link #NONE} for the head or {@link #ABSENT} if not queued. */
+	private int[] previous;
+
+	private int head = NONE;
+	private int tail = NONE;
+	private int size;
+
+	/**
+	 * Constructs an empty queue, accommodating values up to 63
+	 * before growing.
+	 */
+	public IntLinkedQueue() {
+		this(64);
+	}
+
+	/**
+	 * Constructs an empty queue.
+	 *
+	 * @param capacity
+	 *			values below this are accommodated without growing.
+	 */
+	public IntLinkedQueue(int capacity) {
+		next = new int[capacity];
+		previous = new int[capacity];
+		Arrays.fill(previous, ABSENT);
+	}
+
+	/**
+	 * Appends value to the end of the queue.
+	 *
+	 * @param value
+	 *			non-negative value to add.
+	 *
+	 * @return {@code false} if the value was already queued.
+	 */
+	public boolean add(int value) {
+		ensureCapacity(value);
+		if (previous[value] != ABSENT)
+			return false;
+
+		previous[value] = tail;
+		next[value] = NONE;
+		if (tail != NONE)
+			next[tail] = value;
+		else
+			head = value;
+
+		tail = value;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Removes the value from the queue, if present. Runs in constant time.
+	 *
+	 * @param value
+	 *			value to remove.
+	 *
+	 * @return {@code true} if the value was removed.
+	 */
+	public boolean remove(int value) {
+		if (!contains(value))
+			return false;
+
+		int p = previous[value];
+		int n = next[value];
+		if (p != NONE)
+			next[p] = n;
+		else
+			head = n;
+
+		if (n != NONE)
+			previous[n] = p;
+		else
+			tail = p;
+
+		previous[value] = ABSENT;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Removes and returns the oldest value in the queue.
+	 *
+	 * @return first value.
+	 * @throws RuntimeException if the queue is empty.
+	 */
+	public int popFirst() {
+		if (size == 0)
+			throw new RuntimeException("Queue is empty.");
+
+		int value = head;
+		remove(value);
+		return value;
+	}
+
+	/**
+	 * @return the oldest value in the queue, or {@code -1} if empty.
+	 */
+	public int peekFirst() {
+		return head;
+	}
+
+	/**
+	 * Check if value is queued. Runs in constant time.
+	 *
+	 * @param value
+	 *			value to check.
+	 *
+	 * @return {@code true} if queued.
+	 */
+	public boolean contains(int value) {
+		return value >= 0 && value < previous.length && previous[value] != ABSENT;
+	}
+
+	/**
+	 * @return number of queued values.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return {@code true} if nothing is queued.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes all values from the queue.
+	 */
+	public void clear() {
+		for (int value = head; value != NONE; ) {
+			int n = next[value];
+			previous[value] = ABSENT;
+			value = n;
+		}
+
+		head = tail = NONE;
+		size = 0;
+	}
+
+	/**
+	 * Grows the backing arrays, if necessary, so that the value can be
+	 * queued without further allocation.
+	 *
+	 * @param value
+	 *			value to accommodate.
+	 */
+	public void ensureCapacity(int value) {
+		if (value >= previous.length) {
+			int capacity = Math.max(2 * previous.length, value + 1);
+			int oldCapacity = previous.length;
+
+			next = Arrays.copyOf(next, capacity);
+			previous = Arrays.copyOf(previous, capacity);
+			Arrays.fill(previous, oldCapacity, capacity, ABSENT);
+		}
+	}
+
+	/**
+	 * Shrinks the backing arrays to only accommodate values below
+	 * {@code capacity}.
+	 *
+	 * @param capacity
+	 *			values below this remain accommodated.
+	 * @throws IllegalStateException if a larger value is queued.
+	 */
+	public void trim(int capacity) {
+		if (capacity >= previous.length)
+			return;
+
+		for (int value = capacity; previous.length > value; value++) {
+			if (previous[value] != ABSENT)
+				throw new IllegalStateException("Value " + value + " is still queued.");
+		}
+
+		next = Arrays.copyOf(next, capacity);
+		previous = Arrays.copyOf(previous, capacity);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("IntLinkedQueue(");
+		for (int value = head; value != NONE; value = next[value]) {
+			if (value != head) sb.append(", ");
+			sb.append(value);
+		}
+		sb.append(')');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,333 @@
+package com.artemis.utils;
+
+import com.artemis.ComponentManager;
+
+import java.util.Arrays;
+
+/**
+ * <p>{@link BitVector} additionally keeping a summary of which words hold
+ * any set bits, and counting the set bits as they change. Scanning
+ * operations - {@link #nextSetBit(int)}, {@link #toIntBag(IntBag)} and
+ * {@link #clear()} - only visit non-empty words, {@link #cardinality()} and
+ * {@link #isEmpty()} are constant time, and {@link #toIntBag(IntBag)} sizes
+ * its destination up front.</p>
+ *
+ * <p>Suited for large, sparsely populated sets which are frequently scanned
+ * and cleared, such as entities changed during a single frame. Setting and
+ * clearing single bits is slightly more expensive, as the summary and count
+ * are kept up to date.</p>
+ *
+ * @see BitVector
+ */
+public class SummaryBitVector extends BitVector {
+
+	/** Bit {@code i} is set if, and only if, word {@code i} is non-zero. */
+	private long[] summary = {0};
+	private int nonEmptyWords;
+	/** Number of set bits. */
+	private int count;
+
+	public SummaryBitVector() {
+	}
+
+	/** @param nbits the initial size of the bit set */
+	public SummaryBitVector(int nbits) {
+		super(nbits);
+		fitSummary();
+	}
+
+	/** @param copyFrom bits to copy */
+	public SummaryBitVector(BitVector copyFrom) {
+		super(copyFrom);
+		summarize();
+	}
+
+	@Override
+	public void set(int index) {
+		ensureCapacity(index);
+		unsafeSet(index);
+	}
+
+	@Override
+	public void set(int fromIndex, int toIndex) {
+		if (fromIndex >= toIndex)
+			return;
+
+		int startWord = fromIndex >>> 6;
+		int endWord = (toIndex - 1) >>> 6;
+		ensureCapacity(toIndex - 1);
+
+		long firstMask = -1L << fromIndex;
+		long lastMask = -1L >>> -toIndex;
+		if (startWord == endWord) {
+			write(startWord, words[startWord] | (firstMask & lastMask));
+		} else {
+			write(startWord, words[startWord] | firstMask);
+			for (int i = startWord + 1; endWord > i; i++)
+				write(i, -1L);
+			write(endWord, words[endWord] | lastMask);
+		}
+	}
+
+	@Override
+	public void unsafeSet(int index) {
+		int word = index >>> 6;
+		long bits = words[word];
+		long mask = 1L << index;
+		if ((bits & mask) != 0L)
+			return;
+
+		if (bits == 0L)
+			mark(word);
+
+		words[word] = bits | mask;
+		count++;
+	}
+
+	@Override
+	public void unsafeSetWord(int wordIndex, long word) {
+		write(wordIndex, word);
+	}
+
+	@Override
+	public void flip(int index) {
+		ensureCapacity(index);
+		int word = index >>> 6;
+		write(word, words[word] ^ (1L << index));
+	}
+
+	@Override
+	public void clear(int index) {
+		if ((index >>> 6) < words.length)
+			unsafeClear(index);
+	}
+
+	@Override
+	public void unsafeClear(int index) {
+		int word = index >>> 6;
+		long bits = words[word];
+		long mask = 1L << index;
+		if ((bits & mask) != 0L) {
+			bits &= ~mask;
+			words[word] = bits;
+			count--;
+			if (bits == 0L)
+				unmark(word);
+		}
+	}
+
+	@Override
+	public void clear() {
+		long[] summary = this.summary;
+		for (int i = 0; summary.length > i; i++) {
+			for (long marks = summary[i]; marks != 0L; marks &= marks - 1) {
+				words[(i << 6) + Long.numberOfTrailingZeros(marks)] = 0L;
+			}
+			summary[i] = 0L;
+		}
+		nonEmptyWords = 0;
+		count = 0;
+	}
+
+	@Override
+	public void ensureCapacity(int bits) {
+		super.ensureCapacity(bits);
+		fitSummary();
+	}
+
+	@Override
+	public void trim(int bits) {
+		super.trim(bits);
+		summary = Arrays.copyOf(summary, summaryLength());
+		summarize();
+	}
+
+	@Override
+	public void set(BitVector other) {
+		super.set(other);
+		summarize();
+	}
+
+	@Override
+	public void and(BitVector other) {
+		long[] otherWords = other.words;
+		for (int i = 0; summary.length > i; i++) {
+			for (long marks = summary[i]; marks != 0L; marks &= marks - 1) {
+				int word = (i << 6) + Long.numberOfTrailingZeros(marks);
+				write(word, (otherWords.length > word) ? words[word] & otherWords[word] : 0L);
+			}
+		}
+	}
+
+	@Override
+	public void andNot(BitVector other) {
+		long[] otherWords = other.words;
+		for (int i = 0; summary.length > i; i++) {
+			for (long marks = summary[i]; marks != 0L; marks &= marks - 1) {
+				int word = (i << 6) + Long.numberOfTrailingZeros(marks);
+				if (otherWords.length > word)
+					write(word, words[word] & ~otherWords[word]);
+			}
+		}
+	}
+
+	@Override
+	public void or(BitVector other) {
+		super.or(other);
+		summarize();
+	}
+
+	@Override
+	public void xor(BitVector other) {
+		super.xor(other);
+		summarize();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	@Override
+	public int length() {
+		for (int i = summary.length - 1; i >= 0; i--) {
+			long marks = summary[i];
+			if (marks != 0L) {
+				int word = (i << 6) + 63 - Long.numberOfLeadingZeros(marks);
+				return (word << 6) + 64 - Long.numberOfLeadingZeros(words[word]);
+			}
+		}
+
+		return 0;
+	}
+
+	@Override
+	public int nextSetBit(int fromIndex) {
+		int word = fromIndex >>> 6;
+		if (word >= words.length)
+			return -1;
+
+		long bitmap = words[word] >>> fromIndex;
+		if (bitmap != 0L)
+			return fromIndex + Long.numberOfTrailingZeros(bitmap);
+
+		word = nextWord(word + 1);
+		return (word != -1)
+			? (word << 6) + Long.numberOfTrailingZeros(words[word])
+			: -1;
+	}
+
+	@Override
+	public int cardinality() {
+		return count;
+	}
+
+	@Override
+	public IntBag toIntBag(IntBag out) {
+		if (count > out.getData().length)
+			grow(out, count);
+		out.setSize(count);
+
+		int[] data = out.getData();
+		int index = 0;
+		for (int i = 0; summary.length > i; i++) {
+			for (long marks = summary[i]; marks != 0L; marks &= marks - 1) {
+				int word = (i << 6) + Long.numberOfTrailingZeros(marks);
+				int wordBits = word << 6;
+				for (long bitset = words[word]; bitset != 0L; bitset &= bitset - 1) {
+					data[index++] = wordBits + Long.numberOfTrailingZeros(bitset);
+				}
+			}
+		}
+
+		return out;
+	}
+
+	@Override
+	public IntBag toIntBagIdCid(ComponentManager cm, IntBag out) {
+		if (2 * count > out.getData().length)
+			grow(out, 2 * count);
+		out.setSize(2 * count);
+
+		int[] data = out.getData();
+		int index = 0;
+		for (int i = 0; summary.length > i; i++) {
+			for (long marks = summary[i]; marks != 0L; marks &= marks - 1) {
+				int word = (i << 6) + Long.numberOfTrailingZeros(marks);
+				int wordBits = word << 6;
+				for (long bitset = words[word]; bitset != 0L; bitset &= bitset - 1) {
+					int id = wordBits + Long.numberOfTrailingZeros(bitset);
+					data[index] = id;
+					data[index + 1] = cm.getIdentity(id);
+					index += 2;
+				}
+			}
+		}
+
+		return out;
+	}
+
+	/** @return index of the first non-empty word at or after {@code fromWord}, or {@code -1}. */
+	private int nextWord(int fromWord) {
+		int i = fromWord >>> 6;
+		if (i >= summary.length)
+			return -1;
+
+		long marks = summary[i] & (-1L << fromWord);
+		while (marks == 0L) {
+			if (++i == summary.length)
+				return -1;
+
+			marks = summary[i];
+		}
+
+		return (i << 6) + Long.numberOfTrailingZeros(marks);
+	}
+
+	/** Writes a word, keeping the summary up to date. */
+	private void write(int word, long bits) {
+		long previous = words[word];
+		words[word] = bits;
+		count += Long.bitCount(bits) - Long.bitCount(previous);
+		if (previous == 0L) {
+			if (bits != 0L)
+				mark(word);
+		} else if (bits == 0L) {
+			unmark(word);
+		}
+	}
+
+	private void mark(int word) {
+		summary[word >>> 6] |= 1L << word;
+		nonEmptyWords++;
+	}
+
+	private void unmark(int word) {
+		summary[word >>> 6] &= ~(1L << word);
+		nonEmptyWords--;
+	}
+
+	private int summaryLength() {
+		return ((words.length - 1) >>> 6) + 1;
+	}
+
+	private void fitSummary() {
+		int length = summaryLength();
+		if (length > summary.length)
+			summary = Arrays.copyOf(summary, length);
+	}
+
+	/** Rebuilds the summary from all words. */
+	private void summarize() {
+		fitSummary();
+		Arrays.fill(summary, 0L);
+		nonEmptyWords = 0;
+		count = 0;
+		for (int i = 0; words.length > i; i++) {
+			if (words[i] != 0L) {
+				mark(i);
+				count += Long.bitCount(words[i]);
+			}
+		}
+	}
+}
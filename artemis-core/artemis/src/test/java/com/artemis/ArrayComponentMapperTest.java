@@ -0,0 +1,174 @@
+package com.artemis;
+
+import com.artemis.annotations.ArrayStorage;
+import com.artemis.component.ComponentX;
+import org.junit.Test;
+
+import static com.artemis.Aspect.all;
+import static org.junit.Assert.*;
+
+public class ArrayComponentMapperTest {
+
+	@Test
+	public void array_storage_components_get_array_mappers() {
+		World world = new World();
+		assertTrue(world.getMapper(Body.class) instanceof ArrayComponentMapper);
+		assertFalse(world.getMapper(ComponentX.class) instanceof ArrayComponentMapper);
+	}
+
+	@Test
+	public void flyweight_writes_are_stored_per_entity() {
+		World world = new World();
+		ArrayComponentMapper<Body> mapper = (ArrayComponentMapper<Body>) world.getMapper(Body.class);
+
+		int a = world.create();
+		int b = world.create();
+		Body body = mapper.create(a);
+		body.x = 1.5f;
+		body.mass = 3;
+		mapper.create(b).x = 2.5f;
+
+		assertEquals(1.5f, mapper.get(a).x, 0f);
+		assertEquals(3, mapper.get(a).mass);
+		assertEquals(2.5f, mapper.get(b).x, 0f);
+		assertEquals(0, mapper.get(b).mass);
+
+		float[] xs = mapper.getFloats("x");
+		assertEquals(1.5f, xs[a], 0f);
+		assertEquals(2.5f, xs[b], 0f);
+	}
+
+	@Test
+	public void array_writes_are_visible_through_flyweight() {
+		World world = new World();
+		ArrayComponentMapper<Body> mapper = (ArrayComponentMapper<Body>) world.getMapper(Body.class);
+
+		int a = world.create();
+		mapper.create(a);
+
+		mapper.getFloats("x")[a] = 4f;
+		mapper.getLongs("id")[a] = 1L << 40;
+		mapper.getBooleans("asleep")[a] = true;
+		mapper.getDoubles("energy")[a] = 0.25;
+
+		Body body = mapper.get(a);
+		assertEquals(4f, body.x, 0f);
+		assertEquals(1L << 40, body.id);
+		assertTrue(body.asleep);
+		assertEquals(0.25, body.energy, 0);
+	}
+
+	@Test
+	public void untouched_fields_keep_array_writes() {
+		World world = new World();
+		ArrayComponentMapper<Body> mapper = (ArrayComponentMapper<Body>) world.getMapper(Body.class);
+
+		int a = world.create();
+		int b = world.create();
+		mapper.create(a);
+		mapper.create(b);
+
+		int[] masses = mapper.getInts("mass");
+		mapper.get(a).x = 7f;
+		masses[a] = 9;
+		mapper.get(b);
+
+		assertEquals(7f, mapper.get(a).x, 0f);
+		assertEquals(9, mapper.get(a).mass);
+	}
+
+	@Test
+	public void references_alias_the_last_retrieved_entity() {
+		World world = new World();
+		ArrayComponentMapper<Body> mapper = (ArrayComponentMapper<Body>) world.getMapper(Body.class);
+
+		int a = world.create();
+		int b = world.create();
+		Body first = mapper.create(a);
+		Body second = mapper.create(b);
+		assertSame(first, second);
+
+		first.x = -0f;
+		second.energy = Double.NaN;
+		assertEquals(0f, mapper.get(a).x, 0f);
+		assertEquals(-0f, mapper.get(b).x, 0f);
+		assertTrue(Float.floatToRawIntBits(mapper.getFloats("x")[b]) != 0);
+		assertTrue(Double.isNaN(mapper.getDoubles("energy")[b]));
+	}
+
+	@Test
+	public void create_and_remove_update_subscriptions() {
+		World world = new World();
+		ArrayComponentMapper<Body> mapper = (ArrayComponentMapper<Body>) world.getMapper(Body.class);
+		EntitySubscription bodies = world.getAspectSubscriptionManager().get(all(Body.class));
+
+		int a = world.create();
+		mapper.create(a).mass = 5;
+		world.process();
+		assertEquals(1, bodies.getEntityCount());
+		assertTrue(mapper.has(a));
+
+		mapper.remove(a);
+		world.process();
+		assertEquals(0, bodies.getEntityCount());
+		assertFalse(mapper.has(a));
+		assertNull(mapper.get(a));
+
+		assertEquals(0, mapper.create(a).mass);
+	}
+
+	@Test
+	public void transmuters_and_archetypes_create_components() {
+		World world = new World();
+		ArrayComponentMapper<Body> mapper = (ArrayComponentMapper<Body>) world.getMapper(Body.class);
+
+		Archetype archetype = new ArchetypeBuilder().add(Body.class).build(world);
+		int a = world.create(archetype);
+		assertTrue(mapper.has(a));
+
+		int b = world.create();
+		new EntityTransmuterFactory(world).add(Body.class).build().transmute(b);
+		assertTrue(mapper.has(b));
+		assertEquals(0f, mapper.get(b).x, 0f);
+
+		Body values = new Body();
+		values.mass = 12;
+		int c = world.create();
+		world.edit(c).add(values);
+		assertEquals(12, mapper.get(c).mass);
+	}
+
+	@Test
+	public void arrays_grow_with_world() {
+		World world = new World();
+		ArrayComponentMapper<Body> mapper = (ArrayComponentMapper<Body>) world.getMapper(Body.class);
+
+		int last = -1;
+		for (int i = 0; 10000 > i; i++) {
+			last = world.create();
+			mapper.create(last).mass = i;
+		}
+
+		assertTrue(mapper.getInts("mass").length > last);
+		assertEquals(9999, mapper.getInts("mass")[last]);
+	}
+
+	@Test(expected = InvalidComponentException.class)
+	public void object_fields_are_rejected() {
+		new World().getMapper(Named.class);
+	}
+
+	@ArrayStorage
+	public static class Body extends Component {
+		public float x;
+		public int mass;
+		public long id;
+		public boolean asleep;
+		public double energy;
+	}
+
+	@ArrayStorage
+	public static class Named extends Component {
+		public String name;
+	}
+}
@@ -8,7 +8,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static com.artemis.Aspect.all;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class AspectSubscriptionManagerTest {
 	
@@ -182,4 +182,53 @@ public class AspectSubscriptionManagerTest {
 		
 		}
 	}
+
+	@Test
+	public void released_subscriptions_are_removed() {
+		AspectSubscriptionManager asm = world.getAspectSubscriptionManager();
+		EntitySubscription withY = asm.get(all(ComponentY.class));
+		int count = asm.getSubscriptions().size();
+
+		EntitySubscription first = asm.acquire(all(ComponentX.class));
+		EntitySubscription second = asm.acquire(all(ComponentX.class));
+		assertSame(first, second);
+		assertEquals(count + 1, asm.getSubscriptions().size());
+
+		entity(ComponentX.class);
+		entity(ComponentX.class, ComponentY.class);
+		world.process();
+		assertEquals(2, first.getEntityCount());
+
+		asm.release(first);
+		assertFalse(first.isReleased());
+		asm.release(second);
+		assertTrue(first.isReleased());
+		assertEquals(count, asm.getSubscriptions().size());
+
+		entity(ComponentX.class, ComponentY.class);
+		world.process();
+		assertEquals(2, first.getEntityCount());
+		assertEquals(2, withY.getEntityCount());
+
+		EntitySubscription third = asm.acquire(all(ComponentX.class));
+		assertNotSame(first, third);
+		assertEquals(3, third.getEntityCount());
+	}
+
+	@Test
+	public void subscriptions_obtained_by_get_are_never_released() {
+		AspectSubscriptionManager asm = world.getAspectSubscriptionManager();
+		EntitySubscription acquired = asm.acquire(all(ComponentX.class));
+		asm.get(all(ComponentX.class));
+		asm.release(acquired);
+
+		assertFalse(acquired.isReleased());
+		assertSame(acquired, asm.get(all(ComponentX.class)));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void releasing_unacquired_subscription_fails() {
+		AspectSubscriptionManager asm = world.getAspectSubscriptionManager();
+		asm.release(asm.get(all(ComponentX.class)));
+	}
 }
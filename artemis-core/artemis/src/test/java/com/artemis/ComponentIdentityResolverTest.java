@@ -0,0 +1,53 @@
+package com.artemis;
+
+import com.artemis.ComponentManager.ComponentIdentityResolver;
+import com.artemis.utils.Bag;
+import com.artemis.utils.BitVector;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ComponentIdentityResolverTest {
+
+	@Test
+	public void empty_composition_is_identity_zero() {
+		ComponentIdentityResolver resolver = new ComponentIdentityResolver();
+		assertEquals(ComponentManager.NO_COMPONENTS, resolver.getIdentity(new BitVector()));
+		assertEquals(ComponentManager.NO_COMPONENTS, resolver.getIdentity(new BitVector(1024)));
+	}
+
+	@Test
+	public void identities_survive_rehashing() {
+		ComponentIdentityResolver resolver = new ComponentIdentityResolver();
+		for (int i = 1; 5000 > i; i++) {
+			assertEquals(-1, resolver.getIdentity(composition(i)));
+			assertEquals(i, resolver.register(composition(i), new Bag<ComponentMapper>()));
+		}
+
+		for (int i = 1; 5000 > i; i++) {
+			assertEquals(i, resolver.getIdentity(composition(i)));
+		}
+	}
+
+	@Test
+	public void lookup_ignores_trailing_empty_words() {
+		ComponentIdentityResolver resolver = new ComponentIdentityResolver();
+		BitVector bits = new BitVector();
+		bits.set(3);
+		int identity = resolver.register(bits, new Bag<ComponentMapper>());
+
+		BitVector wide = new BitVector(512);
+		wide.set(3);
+		assertEquals(identity, resolver.getIdentity(wide));
+	}
+
+	private static BitVector composition(int pattern) {
+		BitVector bits = new BitVector();
+		for (int i = 0; 32 > i; i++) {
+			if ((pattern & (1 << i)) != 0)
+				bits.set(i * 7);
+		}
+
+		return bits;
+	}
+}
@@ -0,0 +1,183 @@
+package com.artemis;
+
+import com.artemis.annotations.ArrayStorage;
+import com.artemis.annotations.EntityId;
+import com.artemis.component.ComponentX;
+import com.artemis.component.ComponentY;
+import com.artemis.link.EntityLinkManager;
+import com.artemis.managers.GroupManager;
+import com.artemis.utils.IntBag;
+import org.junit.Test;
+
+import static com.artemis.Aspect.all;
+import static org.junit.Assert.*;
+
+public class DefragmentTest {
+
+	@Test
+	public void entities_are_moved_into_lowest_free_ids() {
+		World world = new World();
+		ComponentMapper<ComponentX> mComponentX = world.getMapper(ComponentX.class);
+		ComponentMapper<ComponentY> mComponentY = world.getMapper(ComponentY.class);
+		EntitySubscription xs = world.getAspectSubscriptionManager().get(all(ComponentX.class));
+		EntitySubscription ys = world.getAspectSubscriptionManager().get(all(ComponentY.class));
+
+		ComponentX[] components = new ComponentX[100];
+		for (int i = 0; 100 > i; i++) {
+			int id = world.create();
+			components[i] = mComponentX.create(id);
+			if (i % 2 == 0)
+				mComponentY.create(id);
+		}
+		world.process();
+
+		for (int i = 0; 90 > i; i++) {
+			if (i % 3 != 0)
+				world.delete(i);
+		}
+		world.process();
+
+		EntityRemap remap = world.defragment();
+		assertEquals(40, xs.getEntityCount());
+
+		IntBag entities = xs.getEntities();
+		for (int i = 0; 40 > i; i++) {
+			assertEquals(i, entities.get(i));
+		}
+
+		for (int i = 0; 100 > i; i++) {
+			if (i >= 90 || i % 3 == 0) {
+				int id = remap.get(i);
+				assertTrue(id < 40);
+				assertSame(components[i], mComponentX.get(id));
+				assertEquals(i % 2 == 0, mComponentY.has(id));
+				assertEquals(i % 2 == 0, ys.getActiveEntityIds().get(id));
+			}
+		}
+
+		world.trim();
+		assertEquals(40, world.getEntityManager().getNextID());
+
+		world.delete(remap.get(99));
+		world.process();
+		assertEquals(39, xs.getEntityCount());
+		assertFalse(mComponentX.has(remap.get(99)));
+	}
+
+	@Test
+	public void relocated_entities_keep_changing_composition() {
+		World world = new World();
+		ComponentMapper<ComponentX> mComponentX = world.getMapper(ComponentX.class);
+		ComponentMapper<ComponentY> mComponentY = world.getMapper(ComponentY.class);
+		EntitySubscription ys = world.getAspectSubscriptionManager().get(all(ComponentY.class))
+			.setIncrementalEntities(true);
+
+		for (int i = 0; 10 > i; i++)
+			mComponentY.create(world.create());
+		world.process();
+
+		for (int i = 0; 5 > i; i++)
+			world.delete(i);
+		world.process();
+
+		EntityRemap remap = world.defragment();
+		assertEquals(5, remap.size());
+		assertEquals(5, ys.getEntityCount());
+		for (int i = 0; 5 > i; i++) {
+			assertTrue(ys.getEntities().contains(i));
+		}
+
+		mComponentX.create(2);
+		mComponentY.remove(3);
+		world.process();
+
+		assertEquals(4, ys.getEntityCount());
+		assertFalse(ys.getEntities().contains(3));
+		assertTrue(world.getMapper(ComponentX.class).has(2));
+	}
+
+	@Test
+	public void entity_id_fields_are_rewritten() {
+		World world = new World(new WorldConfiguration()
+			.setSystem(EntityLinkManager.class));
+		ComponentMapper<Links> mLinks = world.getMapper(Links.class);
+
+		for (int i = 0; 10 > i; i++)
+			world.create();
+
+		int source = world.create();
+		Links links = mLinks.create(source);
+		links.target = 9;
+		links.targets.add(8);
+		links.targets.add(1);
+		world.process();
+
+		for (int i = 2; 8 > i; i++)
+			world.delete(i);
+		world.process();
+
+		EntityRemap remap = world.defragment();
+		assertEquals(remap.get(9), mLinks.get(remap.get(source)).target);
+		assertEquals(remap.get(8), mLinks.get(remap.get(source)).targets.get(0));
+		assertEquals(1, mLinks.get(remap.get(source)).targets.get(1));
+
+		world.process();
+		assertEquals(remap.get(9), mLinks.get(remap.get(source)).target);
+	}
+
+	@Test
+	public void listeners_are_informed() {
+		World world = new World(new WorldConfiguration()
+			.setSystem(GroupManager.class));
+		GroupManager groups = world.getSystem(GroupManager.class);
+
+		for (int i = 0; 10 > i; i++)
+			world.create();
+		groups.add(9, "last");
+		world.process();
+
+		world.delete(0);
+		world.process();
+
+		EntityRemap remap = world.defragment();
+		assertEquals(0, remap.get(9));
+		assertTrue(groups.isInGroup(0, "last"));
+		assertFalse(groups.isInGroup(9, "last"));
+		assertEquals(0, groups.getEntities("last").get(0));
+	}
+
+	@Test
+	public void array_storage_is_moved() {
+		World world = new World();
+		ArrayComponentMapper<Mass> mMass = (ArrayComponentMapper<Mass>) world.getMapper(Mass.class);
+
+		for (int i = 0; 4 > i; i++)
+			mMass.create(world.create()).value = i;
+		world.process();
+
+		world.delete(1);
+		world.process();
+
+		world.defragment();
+		assertEquals(3, mMass.get(1).value, 0f);
+		assertEquals(2, mMass.get(2).value, 0f);
+		assertFalse(mMass.has(3));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void pending_changes_prevent_defragmenting() {
+		World world = new World();
+		world.create();
+		world.defragment();
+	}
+
+	public static class Links extends Component {
+		@EntityId public int target = -1;
+		@EntityId public IntBag targets = new IntBag();
+	}
+
+	@ArrayStorage
+	public static class Mass extends Component {
+		public float value;
+	}
+}
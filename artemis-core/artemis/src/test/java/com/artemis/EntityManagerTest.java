@@ -114,4 +114,169 @@ public class EntityManagerTest {
 		ids = new int[] { w.create(), w.create(), w.create() };
 		assertArrayEquals(new int[] {0, 1, 2}, ids);
 	}
+
+	@Test
+	public void handles_reject_recycled_ids() {
+		World w = new World(new WorldConfiguration()
+			.setTrackEntityGenerations(true));
+
+		int e1 = w.create();
+		long handle = w.handle(e1);
+		assertEquals(e1, w.resolve(handle));
+
+		w.delete(e1);
+		assertEquals(e1, w.resolve(handle));
+		w.process();
+		assertEquals(-1, w.resolve(handle));
+
+		int e2 = w.create();
+		assertEquals(e1, e2);
+		assertEquals(-1, w.resolve(handle));
+		assertEquals(e2, w.resolve(w.handle(e2)));
+		assertNotEquals(handle, w.handle(e2));
+	}
+
+	@Test
+	public void handles_survive_growing_entity_stores() {
+		World w = new World(new WorldConfiguration()
+			.setTrackEntityGenerations(true)
+			.expectedEntityCount(4));
+
+		long[] handles = new long[1024];
+		for (int i = 0; handles.length > i; i++)
+			handles[i] = w.handle(w.create());
+
+		for (int i = 0; handles.length > i; i++)
+			assertEquals(i, w.resolve(handles[i]));
+
+		assertEquals(-1, w.resolve(2048L));
+		assertEquals(-1, w.resolve(-1L));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void handles_require_generation_tracking() {
+		world.handle(world.create());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void resolving_handles_requires_generation_tracking() {
+		world.create();
+		world.resolve(0L);
+	}
+
+	@Test
+	public void create_specific_recycled_ids() {
+		EntityManager em = world.getEntityManager();
+		for (int i = 0; 8 > i; i++)
+			world.create();
+
+		world.process();
+		for (int i = 0; 8 > i; i++)
+			world.delete(i);
+
+		world.process();
+
+		world.createSpecific(5);
+		world.createSpecific(2);
+		assertTrue(em.isActive(5));
+		assertTrue(em.isActive(2));
+
+		int[] expected = {0, 1, 3, 4, 6, 7, 8};
+		for (int id : expected)
+			assertEquals(id, world.create());
+	}
+
+	@Test
+	public void compact_releases_free_ids_at_top_of_range() {
+		EntityManager em = world.getEntityManager();
+		ComponentMapper<ComponentX> mComponentX = world.getMapper(ComponentX.class);
+		EntitySubscription all = world.getAspectSubscriptionManager().get(Aspect.all());
+
+		for (int i = 0; 10000 > i; i++)
+			mComponentX.create(world.create());
+
+		world.process();
+		for (int i = 10; 10000 > i; i++)
+			world.delete(i);
+
+		world.delete(3);
+		world.process();
+		int capacity = em.getCapacity();
+
+		assertTrue(world.trim());
+		assertFalse(world.trim());
+		assertEquals(10, em.getNextID());
+		assertTrue(capacity > em.getCapacity());
+		assertEquals(9, all.getEntityCount());
+		assertTrue(mComponentX.has(9));
+
+		assertEquals(3, world.create());
+		assertEquals(10, world.create());
+		assertEquals(11, world.create());
+		for (int i = 0; 10000 > i; i++)
+			mComponentX.create(world.create());
+
+		world.process();
+		assertEquals(10012, all.getEntityCount());
+		assertTrue(mComponentX.has(10000));
+	}
+
+	@Test
+	public void entities_in_use_at_top_of_range_prevent_compacting() {
+		EntityManager em = world.getEntityManager();
+		for (int i = 0; 10000 > i; i++)
+			world.create();
+
+		world.process();
+		for (int i = 0; 9999 > i; i++)
+			world.delete(i);
+
+		world.process();
+		assertFalse(world.trim());
+		assertEquals(10000, em.getNextID());
+	}
+
+	@Test
+	public void auto_trim_waits_for_consecutive_idle_frames() {
+		world = new World(new WorldConfiguration().setAutoTrimFrames(3));
+		EntityManager em = world.getEntityManager();
+		for (int i = 0; 10000 > i; i++)
+			world.create();
+
+		world.process();
+		int capacity = em.getCapacity();
+		for (int i = 100; 10000 > i; i++)
+			world.delete(i);
+
+		world.process();
+		world.process();
+		assertEquals(capacity, em.getCapacity());
+
+		world.process();
+		assertTrue(capacity > em.getCapacity());
+		assertEquals(100, em.getNextID());
+	}
+
+	@Test
+	public void auto_trim_compacts_once_top_of_range_is_freed() {
+		world = new World(new WorldConfiguration().setAutoTrimFrames(3));
+		EntityManager em = world.getEntityManager();
+		for (int i = 0; 10000 > i; i++)
+			world.create();
+
+		world.process();
+		int capacity = em.getCapacity();
+		for (int i = 100; 9999 > i; i++)
+			world.delete(i);
+
+		for (int i = 0; 9 > i; i++)
+			world.process();
+		assertEquals(capacity, em.getCapacity());
+
+		world.delete(9999);
+		for (int i = 0; 3 > i; i++)
+			world.process();
+		assertTrue(capacity > em.getCapacity());
+		assertEquals(100, em.getNextID());
+	}
 }
@@ -7,6 +7,8 @@ import com.artemis.utils.IntBag;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static com.artemis.Aspect.all;
 import static org.junit.Assert.*;
 
@@ -20,6 +22,32 @@ public class EntitySubscriptionTest {
 		assertEquals(allX.hashCode(), allX2.hashCode());
 	}
 
+	@Test
+	public void aspect_builder_equality_ignores_order_and_repetition() {
+		Aspect.Builder xy = all(ComponentX.class, ComponentY.class);
+		Aspect.Builder yx = all(ComponentY.class).all(ComponentX.class, ComponentY.class);
+		assertEquals(xy, yx);
+		assertEquals(xy.hashCode(), yx.hashCode());
+
+		assertNotEquals(xy, all(ComponentX.class).exclude(ComponentY.class));
+		assertNotEquals(all(ComponentX.class).one(ComponentY.class),
+			all(ComponentY.class).one(ComponentX.class));
+	}
+
+	@Test
+	public void equivalent_aspects_share_subscriptions() {
+		World world = new World();
+		AspectSubscriptionManager asm = world.getAspectSubscriptionManager();
+
+		EntitySubscription xy = asm.get(all(ComponentX.class, ComponentY.class));
+		assertSame(xy, asm.get(all(ComponentX.class, ComponentY.class)));
+		assertEquals(0, asm.getCollapsedDuplicates());
+
+		assertSame(xy, asm.get(all(ComponentY.class, ComponentX.class)));
+		assertSame(xy, asm.get(all(ComponentX.class, ComponentX.class, ComponentY.class)));
+		assertEquals(2, asm.getCollapsedDuplicates());
+	}
+
 	@Test
 	public void entity_subscriptions_are_reused_when_appropriate_test() {
 		World world = new World();
@@ -355,4 +383,247 @@ public class EntitySubscriptionTest {
 
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void dense_changes_match_entity_by_entity_processing() {
+		World world = new World();
+		AspectSubscriptionManager asm = world.getAspectSubscriptionManager();
+		ComponentMapper<ComponentX> mx = world.getMapper(ComponentX.class);
+		ComponentMapper<ComponentY> my = world.getMapper(ComponentY.class);
+
+		EntitySubscription all = asm.get(all());
+		EntitySubscription withX = asm.get(all(ComponentX.class));
+		EntitySubscription xNotY = asm.get(all(ComponentX.class).exclude(ComponentY.class));
+
+		final int[] listenerDelta = new int[1];
+		xNotY.addSubscriptionListener(new EntitySubscription.SubscriptionListener() {
+			@Override
+			public void inserted(IntBag entities) {
+				listenerDelta[0] += entities.size();
+			}
+
+			@Override
+			public void removed(IntBag entities) {
+				listenerDelta[0] -= entities.size();
+			}
+		});
+
+		int count = 4 * AspectSubscriptionManager.DENSE_MIN_CHANGED;
+		for (int i = 0; count > i; i++) {
+			int id = world.create();
+			if (i % 3 != 0) mx.create(id);
+			if (i % 2 == 0) my.create(id);
+		}
+		world.process();
+		assertMatches(world, all, withX, xNotY);
+		assertEquals(xNotY.getEntityCount(), listenerDelta[0]);
+
+		for (int i = 0; count > i; i++) {
+			if (i % 5 == 0) {
+				world.delete(i);
+			} else if (i % 2 == 0) {
+				my.remove(i);
+			} else {
+				my.create(i);
+			}
+		}
+		world.process();
+		assertMatches(world, all, withX, xNotY);
+		assertEquals(xNotY.getEntityCount(), listenerDelta[0]);
+	}
+
+	@Test
+	public void routed_changes_match_entity_by_entity_processing() {
+		World world = new World();
+		AspectSubscriptionManager asm = world.getAspectSubscriptionManager();
+		ComponentMapper<ComponentX> mx = world.getMapper(ComponentX.class);
+		ComponentMapper<ComponentY> my = world.getMapper(ComponentY.class);
+
+		EntitySubscription all = asm.get(all());
+		EntitySubscription withX = asm.get(all(ComponentX.class));
+		EntitySubscription withY = asm.get(all(ComponentY.class));
+		world.process();
+
+		for (int i = 0; 64 > i; i++) {
+			int id = world.create();
+			if (i % 2 == 0) mx.create(id);
+		}
+		world.process();
+		assertMatches(world, all, withX, withY);
+
+		for (int frame = 0; 8 > frame; frame++) {
+			for (int id = frame % 3; 64 > id; id += 3) {
+				if (my.has(id)) my.remove(id);
+				else my.create(id);
+			}
+			for (int id = frame % 5; 64 > id; id += 5) {
+				if (mx.has(id)) mx.remove(id);
+				else mx.create(id);
+			}
+
+			// subscription created after this frame's changes
+			EntitySubscription xNotY = asm.get(all(ComponentX.class).exclude(ComponentY.class));
+
+			world.delete(frame);
+			int shortLived = world.create();
+			mx.create(shortLived);
+			world.delete(shortLived);
+			world.process();
+
+			int recycled = world.create();
+			my.create(recycled);
+			world.process();
+
+			assertMatches(world, all, withX, withY, xNotY);
+		}
+	}
+
+	@Test
+	public void incremental_entities_match_rebuilt_entities() {
+		World world = new World();
+		AspectSubscriptionManager asm = world.getAspectSubscriptionManager();
+		ComponentMapper<ComponentX> mx = world.getMapper(ComponentX.class);
+		ComponentMapper<ComponentY> my = world.getMapper(ComponentY.class);
+
+		EntitySubscription rebuilt = asm.get(all(ComponentX.class));
+		EntitySubscription incremental = asm.get(all(ComponentX.class).exclude(ComponentY.class));
+
+		int count = 2 * AspectSubscriptionManager.DENSE_MIN_CHANGED;
+		for (int i = 0; count > i; i++) {
+			int id = world.create();
+			mx.create(id);
+			if (i % 4 == 0) my.create(id);
+		}
+		world.process();
+
+		incremental.setIncrementalEntities(true);
+		assertTrue(incremental.isIncrementalEntities());
+		assertSameEntities(world, incremental);
+
+		// few changes per update
+		for (int id = 0; 64 > id; id += 7) {
+			if (my.has(id)) my.remove(id);
+			else my.create(id);
+		}
+		world.delete(3);
+		world.process();
+		assertSameEntities(world, incremental);
+
+		// dense changes
+		for (int id = 0; count > id; id++) {
+			if (id % 3 == 0) world.delete(id);
+			else if (id % 2 == 0) mx.remove(id);
+			else my.create(id);
+		}
+		world.process();
+		assertSameEntities(world, incremental);
+
+		incremental.setIncrementalEntities(false);
+		assertMatches(world, rebuilt, incremental);
+	}
+
+	@Test
+	public void entities_grouped_by_composition() {
+		World world = new World();
+		ComponentMapper<ComponentX> mx = world.getMapper(ComponentX.class);
+		ComponentMapper<ComponentY> my = world.getMapper(ComponentY.class);
+		EntitySubscription subscription = world.getAspectSubscriptionManager()
+			.get(all(ComponentX.class))
+			.setGroupedByComposition(true);
+
+		for (int i = 0; 100 > i; i++) {
+			int id = world.create();
+			mx.create(id);
+			if (i % 3 == 0) my.create(id);
+		}
+		world.process();
+
+		assertSameEntities(world, subscription);
+		IntBag entities = subscription.getEntities();
+		ComponentManager cm = world.getComponentManager();
+		for (int i = 1, s = entities.size(); s > i; i++) {
+			int previous = entities.get(i - 1);
+			int current = entities.get(i);
+			int order = cm.getIdentity(previous) - cm.getIdentity(current);
+			assertTrue(order < 0 || (order == 0 && current > previous));
+		}
+
+		world.delete(3);
+		world.process();
+		assertSameEntities(world, subscription);
+
+		subscription.setGroupedByComposition(false);
+		assertMatches(world, subscription);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void grouped_entities_cannot_be_incremental() {
+		World world = new World();
+		world.getAspectSubscriptionManager().get(all(ComponentX.class))
+			.setGroupedByComposition(true)
+			.setIncrementalEntities(true);
+	}
+
+	@Test
+	public void listeners_receive_entities_ordered_by_id() {
+		World world = new World();
+		ComponentMapper<ComponentX> mx = world.getMapper(ComponentX.class);
+		ComponentMapper<ComponentY> my = world.getMapper(ComponentY.class);
+		EntitySubscription subscription = world.getAspectSubscriptionManager()
+			.get(all(ComponentX.class).exclude(ComponentY.class));
+
+		for (int i = 0; 10 > i; i++)
+			mx.create(world.create());
+		world.process();
+
+		final IntBag removed = new IntBag();
+		subscription.addSubscriptionListener(new EntitySubscription.SubscriptionListener() {
+			@Override
+			public void inserted(IntBag entities) {}
+
+			@Override
+			public void removed(IntBag entities) {
+				removed.addAll(entities);
+			}
+		});
+
+		my.create(1);
+		my.create(4);
+		world.delete(2);
+		world.delete(8);
+		world.process();
+
+		assertEquals(4, removed.size());
+		assertEquals(1, removed.get(0));
+		assertEquals(2, removed.get(1));
+		assertEquals(4, removed.get(2));
+		assertEquals(8, removed.get(3));
+	}
+
+	private static void assertSameEntities(World world, EntitySubscription subscription) {
+		IntBag actual = new IntBag();
+		actual.addAll(subscription.getEntities());
+		Arrays.sort(actual.getData(), 0, actual.size());
+
+		IntBag expected = new IntBag();
+		for (int id = 0, s = world.getEntityManager().getNextID(); s > id; id++) {
+			if (world.getEntityManager().isActive(id) && subscription.getAspect().isInterested(id))
+				expected.add(id);
+		}
+
+		assertEquals(expected, actual);
+		assertEquals(expected.size(), subscription.getEntityCount());
+	}
+
+	private static void assertMatches(World world, EntitySubscription... subscriptions) {
+		for (EntitySubscription subscription : subscriptions) {
+			IntBag expected = new IntBag();
+			for (int id = 0, s = world.getEntityManager().getNextID(); s > id; id++) {
+				if (world.getEntityManager().isActive(id) && subscription.getAspect().isInterested(id))
+					expected.add(id);
+			}
+
+			assertEquals(subscription.toString(), expected, subscription.getEntities());
+			assertEquals(expected.size(), subscription.getEntityCount());
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package com.artemis;
+
+import com.artemis.annotations.OffHeapStorage;
+import org.junit.Test;
+
+import static com.artemis.Aspect.all;
+import static org.junit.Assert.*;
+
+public class OffHeapComponentMapperTest {
+
+	@Test
+	public void off_heap_components_get_off_heap_mappers() {
+		World world = new World();
+		assertTrue(world.getMapper(Body.class) instanceof OffHeapComponentMapper);
+	}
+
+	@Test
+	public void fields_are_aligned_by_size() {
+		OffHeapComponentMapper<Body> mapper = mapper(new World());
+
+		assertEquals(32, mapper.getStride());
+		assertEquals(0, mapper.offsetOf("id") % 8);
+		assertEquals(0, mapper.offsetOf("energy") % 8);
+		assertEquals(0, mapper.offsetOf("x") % 4);
+		assertEquals(0, mapper.offsetOf("mass") % 4);
+	}
+
+	@Test
+	public void flyweight_writes_are_stored_per_entity() {
+		World world = new World();
+		OffHeapComponentMapper<Body> mapper = mapper(world);
+
+		int a = world.create();
+		int b = world.create();
+		Body body = mapper.create(a);
+		body.x = 1.5f;
+		body.mass = 3;
+		body.asleep = true;
+		mapper.create(b).x = 2.5f;
+
+		assertEquals(1.5f, mapper.get(a).x, 0f);
+		assertEquals(3, mapper.get(a).mass);
+		assertTrue(mapper.get(a).asleep);
+		assertEquals(2.5f, mapper.get(b).x, 0f);
+		assertEquals(0, mapper.get(b).mass);
+		assertFalse(mapper.get(b).asleep);
+
+		mapper.flush();
+		assertEquals(1.5f, mapper.getFloat(a, mapper.offsetOf("x")), 0f);
+		assertEquals(2.5f, mapper.getFloat(b, mapper.offsetOf("x")), 0f);
+	}
+
+	@Test
+	public void typed_writes_are_visible_through_flyweight() {
+		World world = new World();
+		OffHeapComponentMapper<Body> mapper = mapper(world);
+
+		int a = world.create();
+		mapper.create(a);
+		mapper.flush();
+
+		mapper.setLong(a, mapper.offsetOf("id"), 1L << 40);
+		mapper.setDouble(a, mapper.offsetOf("energy"), 0.25);
+		mapper.setInt(a, mapper.offsetOf("mass"), 7);
+		mapper.setBoolean(a, mapper.offsetOf("asleep"), true);
+
+		Body body = mapper.get(a);
+		assertEquals(1L << 40, body.id);
+		assertEquals(0.25, body.energy, 0);
+		assertEquals(7, body.mass);
+		assertTrue(body.asleep);
+	}
+
+	@Test
+	public void typed_accessors_see_the_loaded_flyweight() {
+		World world = new World();
+		OffHeapComponentMapper<Body> mapper = mapper(world);
+		int x = mapper.offsetOf("x");
+		int mass = mapper.offsetOf("mass");
+
+		int a = world.create();
+		Body body = mapper.create(a);
+		body.mass = 3;
+		assertEquals(3, mapper.getInt(a, mass));
+
+		mapper.setFloat(a, x, 4f);
+		assertEquals(4f, body.x, 0f);
+
+		body.mass = 5;
+		mapper.flush();
+		assertEquals(4f, mapper.getFloat(a, x), 0f);
+		assertEquals(5, mapper.getInt(a, mass));
+	}
+
+	@Test
+	public void moving_the_flyweight_keeps_typed_writes() {
+		World world = new World();
+		OffHeapComponentMapper<Body> mapper = mapper(world);
+
+		int a = world.create();
+		int b = world.create();
+		mapper.create(b);
+		Body body = mapper.create(a);
+		mapper.setInt(a, mapper.offsetOf("mass"), 7);
+		body.x = 2f;
+
+		mapper.get(b);
+		assertEquals(2f, mapper.getFloat(a, mapper.offsetOf("x")), 0f);
+		assertEquals(7, mapper.getInt(a, mapper.offsetOf("mass")));
+	}
+
+	@Test
+	public void recreated_components_are_cleared() {
+		World world = new World();
+		OffHeapComponentMapper<Body> mapper = mapper(world);
+		EntitySubscription bodies = world.getAspectSubscriptionManager().get(all(Body.class));
+
+		int a = world.create();
+		mapper.create(a).mass = 5;
+		world.process();
+		assertEquals(1, bodies.getEntityCount());
+
+		mapper.remove(a);
+		world.process();
+		assertEquals(0, bodies.getEntityCount());
+		assertFalse(mapper.has(a));
+		assertNull(mapper.get(a));
+
+		assertEquals(0, mapper.create(a).mass);
+	}
+
+	@Test
+	public void archetypes_and_edits_create_components() {
+		World world = new World();
+		OffHeapComponentMapper<Body> mapper = mapper(world);
+
+		int a = world.create(new ArchetypeBuilder().add(Body.class).build(world));
+		assertTrue(mapper.has(a));
+
+		Body values = new Body();
+		values.mass = 12;
+		int b = world.create();
+		world.edit(b).add(values);
+		assertEquals(12, mapper.get(b).mass);
+	}
+
+	@Test
+	public void pages_are_allocated_on_demand_and_freed_on_dispose() {
+		World world = new World();
+		OffHeapComponentMapper<Body> mapper = mapper(world);
+
+		int last = -1;
+		for (int i = 0; 3 * OffHeapComponentMapper.PAGE_ENTITIES > i; i++) {
+			last = world.create();
+			if (i % OffHeapComponentMapper.PAGE_ENTITIES == 0)
+				mapper.create(last).mass = i;
+		}
+		mapper.create(last).mass = -1;
+
+		assertEquals(3, mapper.getPageCount());
+		assertEquals(OffHeapComponentMapper.PAGE_ENTITIES, mapper.get(OffHeapComponentMapper.PAGE_ENTITIES).mass);
+		assertEquals(-1, mapper.get(last).mass);
+
+		world.dispose();
+		assertEquals(0, mapper.getPageCount());
+	}
+
+	@Test(expected = InvalidComponentException.class)
+	public void object_fields_are_rejected() {
+		new World().getMapper(Named.class);
+	}
+
+	private static OffHeapComponentMapper<Body> mapper(World world) {
+		return (OffHeapComponentMapper<Body>) world.getMapper(Body.class);
+	}
+
+	@OffHeapStorage
+	public static class Body extends Component {
+		public float x;
+		public int mass;
+		public long id;
+		public boolean asleep;
+		public double energy;
+	}
+
+	@OffHeapStorage
+	public static class Named extends Component {
+		public String name;
+	}
+}
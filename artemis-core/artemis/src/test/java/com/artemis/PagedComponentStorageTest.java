@@ -0,0 +1,114 @@
+package com.artemis;
+
+import com.artemis.annotations.PagedStorage;
+import com.artemis.component.ComponentX;
+import com.artemis.utils.Bag;
+import org.junit.Test;
+
+import static com.artemis.Aspect.all;
+import static org.junit.Assert.*;
+
+public class PagedComponentStorageTest {
+
+	@Test
+	public void pages_are_allocated_on_demand() {
+		PagedComponentStorage<String> storage = new PagedComponentStorage<String>(false);
+		storage.ensureCapacity(100 * PagedComponentStorage.PAGE_SIZE);
+
+		assertEquals(0, storage.getPageCount());
+		assertNull(storage.get(5 * PagedComponentStorage.PAGE_SIZE + 3));
+
+		storage.unsafeSet(5 * PagedComponentStorage.PAGE_SIZE + 3, "a");
+		storage.unsafeSet(5 * PagedComponentStorage.PAGE_SIZE + 4, "b");
+		storage.unsafeSet(90 * PagedComponentStorage.PAGE_SIZE, "c");
+		storage.unsafeSet(50 * PagedComponentStorage.PAGE_SIZE, null);
+
+		assertEquals(2, storage.getPageCount());
+		assertEquals("a", storage.get(5 * PagedComponentStorage.PAGE_SIZE + 3));
+		assertEquals("b", storage.get(5 * PagedComponentStorage.PAGE_SIZE + 4));
+		assertEquals("c", storage.get(90 * PagedComponentStorage.PAGE_SIZE));
+		assertNull(storage.get(90 * PagedComponentStorage.PAGE_SIZE + 1));
+	}
+
+	@Test
+	public void adaptive_storage_follows_occupancy() {
+		PagedComponentStorage<String> storage = new PagedComponentStorage<String>(true);
+		storage.ensureCapacity(PagedComponentStorage.PAGE_SIZE - 1);
+		for (int i = 0; PagedComponentStorage.PAGE_SIZE > i; i++) {
+			storage.unsafeSet(i, "e" + i);
+		}
+
+		storage.ensureCapacity(PagedComponentStorage.PAGE_SIZE);
+		assertTrue(storage.isDense());
+		assertEquals("e7", storage.get(7));
+
+		for (int i = 8; PagedComponentStorage.PAGE_SIZE > i; i++) {
+			storage.unsafeSet(i, null);
+		}
+		storage.ensureCapacity(2 * PagedComponentStorage.PAGE_SIZE);
+		assertFalse(storage.isDense());
+		assertEquals(1, storage.getPageCount());
+		assertEquals("e7", storage.get(7));
+		assertNull(storage.get(8));
+	}
+
+	@Test
+	public void paged_components_behave_as_regular_components() {
+		World world = new World(new WorldConfiguration().setAdaptiveComponentStorage(true));
+		ComponentMapper<Rare> mRare = world.getMapper(Rare.class);
+		ComponentMapper<ComponentX> mComponentX = world.getMapper(ComponentX.class);
+		EntitySubscription rares = world.getAspectSubscriptionManager().get(all(Rare.class));
+
+		int rare = -1;
+		for (int i = 0; 5000 > i; i++) {
+			int id = world.create();
+			mComponentX.create(id);
+			if (i == 4000) {
+				mRare.create(id).value = 7;
+				rare = id;
+			}
+		}
+		world.process();
+
+		assertTrue(mComponentX.components instanceof PagedComponentStorage);
+		assertTrue(((PagedComponentStorage) mComponentX.components).isDense());
+		assertFalse(((PagedComponentStorage) mRare.components).isDense());
+		assertEquals(1, ((PagedComponentStorage) mRare.components).getPageCount());
+
+		assertEquals(1, rares.getEntityCount());
+		assertEquals(7, mRare.get(rare).value);
+		assertFalse(mRare.has(rare - 1));
+
+		world.delete(rare);
+		world.process();
+		assertEquals(0, rares.getEntityCount());
+		assertNull(mRare.get(rare));
+	}
+
+	@Test
+	public void paged_components_are_listed_by_type() {
+		World world = new World();
+		ComponentMapper<Rare> mRare = world.getMapper(Rare.class);
+		int a = world.create();
+		int b = world.create();
+		mRare.create(b);
+
+		ComponentManager cm = world.getComponentManager();
+		Bag<Component> components = cm.getComponentsByType(cm.typeFactory.getTypeFor(Rare.class));
+		assertNull(components.get(a));
+		assertSame(mRare.get(b), components.get(b));
+		assertEquals(b + 1, components.size());
+	}
+
+	@Test
+	public void annotated_components_are_paged() {
+		World world = new World();
+		assertTrue(world.getMapper(Rare.class).components instanceof PagedComponentStorage);
+		assertFalse(world.getMapper(ComponentX.class).components instanceof PagedComponentStorage);
+	}
+
+	@PagedStorage
+	public static class Rare extends Component {
+		public int value;
+	}
+}
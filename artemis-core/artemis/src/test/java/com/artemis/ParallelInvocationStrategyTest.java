@@ -0,0 +1,322 @@
+package com.artemis;
+
+import com.artemis.annotations.All;
+import com.artemis.annotations.Read;
+import com.artemis.annotations.Write;
+import com.artemis.systems.IteratingSystem;
+import com.artemis.utils.IntBag;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static com.artemis.Aspect.all;
+import static org.junit.Assert.*;
+
+public class ParallelInvocationStrategyTest {
+
+	@Test
+	public void systems_are_staged_by_component_access() {
+		ParallelInvocationStrategy strategy = new ParallelInvocationStrategy(new ForkJoinPool(4));
+		World world = createWorld(strategy);
+
+		int move = strategy.getStage(world.getSystem(MoveSystem.class));
+		assertEquals(move, strategy.getStage(world.getSystem(DecaySystem.class)));
+		assertTrue(strategy.getStage(world.getSystem(FlagSystem.class)) > move);
+
+		int flag = strategy.getStage(world.getSystem(FlagSystem.class));
+		assertEquals(flag, strategy.getStage(world.getSystem(ExpireSystem.class)));
+
+		int counter = strategy.getStage(world.getSystem(FlagCounterSystem.class));
+		assertTrue(counter > flag);
+		for (BaseSystem system : world.getSystems()) {
+			if (system != world.getSystem(FlagCounterSystem.class))
+				assertNotEquals(counter, strategy.getStage(system));
+		}
+	}
+
+	@Test
+	public void results_match_sequential_strategy() {
+		World sequential = createWorld(new InvocationStrategy());
+		World parallel = createWorld(new ParallelInvocationStrategy(new ForkJoinPool(4)));
+		populate(sequential);
+		populate(parallel);
+
+		for (int frame = 0; 30 > frame; frame++) {
+			sequential.process();
+			parallel.process();
+			assertSameState(sequential, parallel);
+		}
+
+		assertTrue(sequential.getSystem(FlagCounterSystem.class).flagged > 0);
+		assertEquals(
+			sequential.getSystem(FlagCounterSystem.class).flagged,
+			parallel.getSystem(FlagCounterSystem.class).flagged);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void creating_entities_from_concurrent_systems_fails() {
+		World world = new World(new WorldConfigurationBuilder()
+			.with(new MoveSystem(), new SpawnSystem())
+			.register(new ParallelInvocationStrategy(new ForkJoinPool(2)))
+			.build());
+
+		populate(world);
+		world.process();
+	}
+
+	@Test
+	public void systems_sharing_a_subscription_see_all_entities() {
+		ParallelInvocationStrategy strategy = new ParallelInvocationStrategy(new ForkJoinPool(4));
+		World world = new World(new WorldConfigurationBuilder()
+			.with(new HealthReaderSystem(), new OtherHealthReaderSystem())
+			.register(strategy)
+			.build());
+
+		HealthReaderSystem reader = world.getSystem(HealthReaderSystem.class);
+		OtherHealthReaderSystem other = world.getSystem(OtherHealthReaderSystem.class);
+		assertSame(reader.getSubscription(), other.getSubscription());
+		assertEquals(strategy.getStage(reader), strategy.getStage(other));
+		reader.getSubscription().setGroupedByComposition(true);
+
+		populate(world);
+		for (int frame = 0; 10 > frame; frame++) {
+			world.process();
+			assertEquals(250, reader.processed);
+			assertEquals(250, other.processed);
+			reader.processed = other.processed = 0;
+		}
+	}
+
+	@Test
+	public void readers_of_flyweight_components_are_staged_apart() {
+		ParallelInvocationStrategy strategy = new ParallelInvocationStrategy(new ForkJoinPool(4));
+		World world = new World(new WorldConfigurationBuilder()
+			.with(new BodyReaderSystem(), new OtherBodyReaderSystem())
+			.register(strategy)
+			.build());
+
+		assertNotEquals(
+			strategy.getStage(world.getSystem(BodyReaderSystem.class)),
+			strategy.getStage(world.getSystem(OtherBodyReaderSystem.class)));
+	}
+
+	@Test
+	public void systems_matching_flyweight_components_are_staged_apart() {
+		ParallelInvocationStrategy strategy = new ParallelInvocationStrategy(new ForkJoinPool(4));
+		World world = new World(new WorldConfigurationBuilder()
+			.with(new BodyMatchingSystem(), new OtherBodyMatchingSystem())
+			.register(strategy)
+			.build());
+
+		assertNotEquals(
+			strategy.getStage(world.getSystem(BodyMatchingSystem.class)),
+			strategy.getStage(world.getSystem(OtherBodyMatchingSystem.class)));
+	}
+
+	private static World createWorld(SystemInvocationStrategy strategy) {
+		return new World(new WorldConfigurationBuilder()
+			.with(new MoveSystem(),
+				new DecaySystem(),
+				new FlagSystem(),
+				new ExpireSystem(),
+				new FlagCounterSystem())
+			.register(strategy)
+			.build());
+	}
+
+	private static void populate(World world) {
+		ComponentMapper<Position> mPosition = world.getMapper(Position.class);
+		ComponentMapper<Velocity> mVelocity = world.getMapper(Velocity.class);
+		ComponentMapper<Health> mHealth = world.getMapper(Health.class);
+
+		for (int i = 0; 500 > i; i++) {
+			int id = world.create();
+			mPosition.create(id).x = i % 7;
+			if (i % 3 != 0)
+				mVelocity.create(id).x = 1 + i % 4;
+			if (i % 2 == 0)
+				mHealth.create(id).value = 5 + i % 40;
+		}
+	}
+
+	private static void assertSameState(World expected, World actual) {
+		EntityManager em = expected.getEntityManager();
+		assertEquals(em.getNextID(), actual.getEntityManager().getNextID());
+
+		ComponentMapper<Position> ePosition = expected.getMapper(Position.class);
+		ComponentMapper<Position> aPosition = actual.getMapper(Position.class);
+		ComponentMapper<Health> eHealth = expected.getMapper(Health.class);
+		ComponentMapper<Health> aHealth = actual.getMapper(Health.class);
+		ComponentMapper<Flag> eFlag = expected.getMapper(Flag.class);
+		ComponentMapper<Flag> aFlag = actual.getMapper(Flag.class);
+
+		for (int id = 0, s = em.getNextID(); s > id; id++) {
+			assertEquals(em.isActive(id), actual.getEntityManager().isActive(id));
+			if (!em.isActive(id))
+				continue;
+
+			assertEquals(ePosition.get(id).x, aPosition.get(id).x);
+			assertEquals(eHealth.has(id), aHealth.has(id));
+			if (eHealth.has(id))
+				assertEquals(eHealth.get(id).value, aHealth.get(id).value);
+
+			assertEquals(eFlag.has(id), aFlag.has(id));
+			assertEquals(expected.getComponentManager().getIdentity(id),
+				actual.getComponentManager().getIdentity(id));
+		}
+
+		for (Aspect.Builder aspect : new Aspect.Builder[] {all(), all(Flag.class), all(Health.class)}) {
+			IntBag e = expected.getAspectSubscriptionManager().get(aspect).getEntities();
+			IntBag a = actual.getAspectSubscriptionManager().get(aspect).getEntities();
+			assertEquals(e, a);
+		}
+	}
+
+	public static class Position extends Component {
+		public int x;
+	}
+
+	public static class Velocity extends Component {
+		public int x;
+	}
+
+	public static class Health extends Component {
+		public int value;
+	}
+
+	public static class Flag extends Component {}
+
+	@All({Position.class, Velocity.class})
+	public static class MoveSystem extends IteratingSystem {
+		@Write ComponentMapper<Position> mPosition;
+		@Read ComponentMapper<Velocity> mVelocity;
+
+		@Override
+		protected void process(int entityId) {
+			mPosition.get(entityId).x += mVelocity.get(entityId).x;
+		}
+	}
+
+	@All(Health.class)
+	public static class DecaySystem extends IteratingSystem {
+		@Write ComponentMapper<Health> mHealth;
+
+		@Override
+		protected void process(int entityId) {
+			mHealth.get(entityId).value--;
+		}
+	}
+
+	@All(Position.class)
+	public static class FlagSystem extends IteratingSystem {
+		@Read ComponentMapper<Position> mPosition;
+		@Write ComponentMapper<Flag> mFlag;
+
+		@Override
+		protected void process(int entityId) {
+			mFlag.set(entityId, mPosition.get(entityId).x % 10 > 4);
+		}
+	}
+
+	@All(Health.class)
+	public static class ExpireSystem extends IteratingSystem {
+		@Read ComponentMapper<Health> mHealth;
+
+		@Override
+		protected void process(int entityId) {
+			if (mHealth.get(entityId).value <= 0)
+				world.delete(entityId);
+		}
+	}
+
+	/** Undeclared, runs alone. */
+	@All(Flag.class)
+	public static class FlagCounterSystem extends IteratingSystem {
+		int flagged;
+
+		@Override
+		protected void process(int entityId) {
+			flagged++;
+		}
+	}
+
+	@All(Health.class)
+	public static class HealthReaderSystem extends IteratingSystem {
+		@Read ComponentMapper<Health> mHealth;
+		@Write ComponentMapper<Position> mPosition;
+		int processed;
+
+		@Override
+		protected void process(int entityId) {
+			processed++;
+		}
+	}
+
+	@All(Health.class)
+	public static class OtherHealthReaderSystem extends IteratingSystem {
+		@Read ComponentMapper<Health> mHealth;
+		@Write ComponentMapper<Velocity> mVelocity;
+		int processed;
+
+		@Override
+		protected void process(int entityId) {
+			processed++;
+		}
+	}
+
+	@All(Position.class)
+	public static class BodyReaderSystem extends IteratingSystem {
+		@Read ComponentMapper<ArrayComponentMapperTest.Body> mBody;
+		@Write ComponentMapper<Position> mPosition;
+
+		@Override
+		protected void process(int entityId) {
+			if (mBody.has(entityId))
+				mPosition.get(entityId).x = mBody.get(entityId).mass;
+		}
+	}
+
+	@All(Velocity.class)
+	public static class OtherBodyReaderSystem extends IteratingSystem {
+		@Read ComponentMapper<ArrayComponentMapperTest.Body> mBody;
+		@Write ComponentMapper<Velocity> mVelocity;
+
+		@Override
+		protected void process(int entityId) {
+			if (mBody.has(entityId))
+				mVelocity.get(entityId).x = mBody.get(entityId).mass;
+		}
+	}
+
+	@All(ArrayComponentMapperTest.Body.class)
+	public static class BodyMatchingSystem extends IteratingSystem {
+		@Write ComponentMapper<Position> mPosition;
+
+		@Override
+		protected void process(int entityId) {
+			if (mPosition.has(entityId))
+				mPosition.get(entityId).x++;
+		}
+	}
+
+	@All(ArrayComponentMapperTest.Body.class)
+	public static class OtherBodyMatchingSystem extends IteratingSystem {
+		@Write ComponentMapper<Velocity> mVelocity;
+
+		@Override
+		protected void process(int entityId) {
+			if (mVelocity.has(entityId))
+				mVelocity.get(entityId).x++;
+		}
+	}
+
+	@All(Velocity.class)
+	public static class SpawnSystem extends IteratingSystem {
+		@Read ComponentMapper<Velocity> mVelocity;
+
+		@Override
+		protected void process(int entityId) {
+			world.create();
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package com.artemis;
+
+import com.artemis.component.ComponentX;
+import com.artemis.component.ComponentY;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StructuralChangesTest {
+
+	@Test
+	public void last_change_is_found_across_other_entities() {
+		World world = new World();
+		ComponentMapper<ComponentX> mX = world.getMapper(ComponentX.class);
+		ComponentMapper<ComponentY> mY = world.getMapper(ComponentY.class);
+		int a = world.create();
+		int b = world.create();
+		world.process();
+
+		StructuralChanges changes = new StructuralChanges(true);
+		ComponentX first = new ComponentX();
+		changes.create(mX, a, first);
+		changes.create(mX, b, new ComponentX());
+		changes.create(mY, a, new ComponentY());
+
+		assertSame(first, changes.created(changes.lastChange(mX, a)));
+		assertEquals(-1, changes.lastChange(mY, b));
+
+		changes.remove(mX, b);
+		assertNull(changes.created(changes.lastChange(mX, b)));
+		assertSame(first, changes.created(changes.lastChange(mX, a)));
+
+		changes.apply(world);
+		assertSame(first, mX.get(a));
+		assertFalse(mX.has(b));
+		assertEquals(-1, changes.lastChange(mX, a));
+	}
+
+	@Test
+	public void last_change_follows_drained_changes() {
+		World world = new World();
+		ComponentMapper<ComponentX> mX = world.getMapper(ComponentX.class);
+		int a = world.create();
+		int b = world.create();
+		world.process();
+
+		StructuralChanges task = new StructuralChanges(true);
+		ComponentX created = new ComponentX();
+		task.create(mX, b, new ComponentX());
+		task.create(mX, a, created);
+
+		StructuralChanges changes = new StructuralChanges(true);
+		changes.remove(mX, b);
+		changes.drainFrom(task);
+
+		assertEquals(-1, task.lastChange(mX, a));
+		assertSame(created, changes.created(changes.lastChange(mX, a)));
+		assertNotNull(changes.created(changes.lastChange(mX, b)));
+	}
+}
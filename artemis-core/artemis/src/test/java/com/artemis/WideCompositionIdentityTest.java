@@ -0,0 +1,92 @@
+package com.artemis;
+
+import org.junit.Test;
+
+import static com.artemis.Aspect.all;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WideCompositionIdentityTest {
+
+	@SuppressWarnings("unchecked")
+	private static final Class<? extends Component>[] TYPES = new Class[] {
+		C0.class, C1.class, C2.class, C3.class, C4.class, C5.class,
+		C6.class, C7.class, C8.class, C9.class, C10.class, C11.class,
+		C12.class, C13.class, C14.class, C15.class, C16.class
+	};
+
+	@Test
+	public void wide_identities_handle_100k_compositions() {
+		World world = new World(new WorldConfiguration()
+			.setWideCompositionIdentities(true)
+			.expectedEntityCount(100000));
+
+		EntitySubscription withC16 = world.getAspectSubscriptionManager().get(all(C16.class));
+
+		int[] entities = new int[100000];
+		for (int pattern = 1; entities.length >= pattern; pattern++) {
+			entities[pattern - 1] = create(world, pattern);
+		}
+		world.process();
+
+		ComponentManager cm = world.getComponentManager();
+		assertTrue(cm.isWideIdentities());
+
+		int withC16Count = 0;
+		for (int i = 0; entities.length > i; i++) {
+			int pattern = i + 1;
+			int id = entities[i];
+
+			for (int bit = 0; TYPES.length > bit; bit++)
+				assertEquals((pattern & (1 << bit)) != 0, world.getMapper(TYPES[bit]).has(id));
+
+			assertEquals(cm.getIdentity(id), cm.compositionIdentity(cm.componentBits(id)));
+			if ((pattern & (1 << 16)) != 0)
+				withC16Count++;
+		}
+
+		assertTrue(cm.getIdentity(entities[entities.length - 1]) > Short.MAX_VALUE);
+		assertEquals(withC16Count, withC16.getEntities().size());
+	}
+
+	@Test
+	public void compact_identities_fail_loudly_on_overflow() {
+		World world = new World(new WorldConfiguration()
+			.expectedEntityCount(1 << 16));
+
+		try {
+			for (int pattern = 1; (1 << 16) > pattern; pattern++)
+				create(world, pattern);
+
+			fail("expected overflow of short composition ids");
+		} catch (IllegalStateException expected) {}
+	}
+
+	private static int create(World world, int pattern) {
+		int id = world.create();
+		for (int bit = 0; TYPES.length > bit; bit++) {
+			if ((pattern & (1 << bit)) != 0)
+				world.getMapper(TYPES[bit]).create(id);
+		}
+		return id;
+	}
+
+	public static class C0 extends Component {}
+	public static class C1 extends Component {}
+	public static class C2 extends Component {}
+	public static class C3 extends Component {}
+	public static class C4 extends Component {}
+	public static class C5 extends Component {}
+	public static class C6 extends Component {}
+	public static class C7 extends Component {}
+	public static class C8 extends Component {}
+	public static class C9 extends Component {}
+	public static class C10 extends Component {}
+	public static class C11 extends Component {}
+	public static class C12 extends Component {}
+	public static class C13 extends Component {}
+	public static class C14 extends Component {}
+	public static class C15 extends Component {}
+	public static class C16 extends Component {}
+}
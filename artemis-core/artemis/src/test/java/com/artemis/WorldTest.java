@@ -13,6 +13,7 @@ import com.artemis.component.ComponentY;
 import com.artemis.systems.DelayedIteratingSystem;
 import com.artemis.systems.IteratingSystem;
 import com.artemis.utils.Bag;
+import com.artemis.utils.IntBag;
 import org.openjdk.jol.info.ClassLayout;
 import org.openjdk.jol.vm.VM;
 
@@ -208,4 +209,123 @@ public class WorldTest
 			expiredLastRound = 0;
 		}
 	}
+
+	@Test
+	public void bulk_create_from_archetype() {
+		World world = new World(new WorldConfiguration().expectedEntityCount(16));
+		EntitySubscription subscription = world.getAspectSubscriptionManager()
+			.get(Aspect.all(ComponentX.class, ComponentY.class));
+
+		Archetype archetype = new ArchetypeBuilder()
+			.add(ComponentX.class)
+			.add(ComponentY.class)
+			.build(world);
+
+		for (int i = 0; 10 > i; i++)
+			world.create();
+		world.process();
+		world.delete(3);
+		world.delete(7);
+		world.process();
+
+		IntBag ids = world.create(archetype, 1000, new IntBag());
+		assertEquals(1000, ids.size());
+		assertEquals(3, ids.get(0));
+		assertEquals(7, ids.get(1));
+		assertEquals(10, ids.get(2));
+		assertEquals(1007, ids.get(999));
+
+		world.process();
+
+		assertEquals(1000, subscription.getEntityCount());
+		for (int i = 0; ids.size() > i; i++) {
+			int id = ids.get(i);
+			assertEquals(archetype.compositionId, world.compositionId(id));
+			Assert.assertTrue(world.getMapper(ComponentY.class).has(id));
+		}
+	}
+
+	@Test
+	public void bulk_delete() {
+		World world = new World();
+		EntitySubscription all = world.getAspectSubscriptionManager().get(Aspect.all());
+
+		for (int i = 0; 200 > i; i++)
+			world.edit(world.create()).create(ComponentX.class);
+		world.process();
+
+		IntBag first = new IntBag();
+		for (int i = 0; 50 > i; i++)
+			first.add(i);
+
+		BitVector second = new BitVector();
+		second.set(100, 200);
+
+		world.delete(first);
+		world.delete(second);
+		world.process();
+
+		assertEquals(50, all.getEntityCount());
+		IntBag remaining = all.getEntities();
+		for (int i = 0; remaining.size() > i; i++) {
+			int id = remaining.get(i);
+			Assert.assertTrue(id >= 50 && id < 100);
+		}
+	}
+
+	@Test
+	public void query_reflects_current_compositions() {
+		World world = new World();
+		ComponentMapper<ComponentX> mx = world.getMapper(ComponentX.class);
+		ComponentMapper<ComponentY> my = world.getMapper(ComponentY.class);
+
+		for (int i = 0; 10 > i; i++) {
+			int id = world.create();
+			mx.create(id);
+			if (i % 2 == 0) my.create(id);
+		}
+		world.process();
+		int subscriptions = world.getAspectSubscriptionManager().getSubscriptions().size();
+
+		IntBag result = world.query(Aspect.all(ComponentX.class).exclude(ComponentY.class), new IntBag());
+		assertEquals(5, result.size());
+		for (int i = 0; result.size() > i; i++)
+			assertEquals(2 * i + 1, result.get(i));
+
+		// not yet seen by subscriptions
+		my.create(1);
+		world.delete(3);
+		mx.create(world.create());
+
+		result = world.query(Aspect.all(ComponentX.class).exclude(ComponentY.class), new IntBag());
+		assertEquals(4, result.size());
+		assertEquals(5, result.get(0));
+		assertEquals(10, result.get(3));
+
+		assertEquals(subscriptions, world.getAspectSubscriptionManager().getSubscriptions().size());
+	}
+
+	@Test
+	public void query_matches_existing_subscription() {
+		World world = new World();
+		ComponentMapper<ComponentX> mx = world.getMapper(ComponentX.class);
+		ComponentMapper<ComponentY> my = world.getMapper(ComponentY.class);
+		EntitySubscription subscription = world.getAspectSubscriptionManager()
+			.get(Aspect.all(ComponentX.class).exclude(ComponentY.class));
+
+		for (int i = 0; 10 > i; i++) {
+			int id = world.create();
+			mx.create(id);
+			if (i % 2 == 0) my.create(id);
+		}
+		world.process();
+
+		IntBag result = world.query(Aspect.exclude(ComponentY.class).all(ComponentX.class), new IntBag());
+		assertEquals(subscription.getEntities(), result);
+
+		my.create(1);
+		result = world.query(Aspect.exclude(ComponentY.class).all(ComponentX.class), new IntBag());
+		assertEquals(4, result.size());
+		assertEquals(3, result.get(0));
+	}
 }
@@ -2,12 +2,17 @@ package com.artemis.managers;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import com.artemis.WorldConfiguration;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.artemis.World;
+import com.artemis.utils.ImmutableBag;
+import com.artemis.utils.ImmutableIntBag;
+import com.artemis.utils.IntBag;
 
 public class GroupManagerTest {
 	private static final String GROUPIE = "groupie";
@@ -62,4 +67,86 @@ public class GroupManagerTest {
 		assertEquals(0, gm.getEntities(GROUPIE2).size());
 		assertFalse(gm.isInAnyGroup(entity));
 	}
+
+	@Test
+	public void removed_entities_leave_only_that_group() {
+		int entity = world.create();
+		gm.add(entity, GROUPIE, GROUPIE2);
+		gm.remove(entity, GROUPIE);
+
+		assertFalse(gm.isInGroup(entity, GROUPIE));
+		assertTrue(gm.isInGroup(entity, GROUPIE2));
+		assertEquals(0, gm.getEntities(GROUPIE).size());
+		assertEquals(1, gm.getGroups(entity).size());
+		assertEquals(GROUPIE2, gm.getGroups(entity).get(0));
+
+		gm.remove(entity, GROUPIE2);
+		assertFalse(gm.isInAnyGroup(entity));
+		assertEquals(0, gm.getGroups(entity).size());
+	}
+
+	@Test
+	public void group_entities_are_updated_in_place() {
+		int[] entities = new int[5];
+		for (int i = 0; entities.length > i; i++) {
+			entities[i] = world.create();
+			gm.add(entities[i], GROUPIE);
+		}
+
+		ImmutableIntBag group = gm.getEntities(GROUPIE);
+		gm.remove(entities[1], GROUPIE);
+		world.delete(entities[3]);
+		world.process();
+
+		// last entity takes the place of a removed one
+		assertEquals(3, group.size());
+		assertEquals(entities[0], group.get(0));
+		assertEquals(entities[4], group.get(1));
+		assertEquals(entities[2], group.get(2));
+
+		int entity = world.create();
+		gm.add(entity, GROUPIE);
+		assertEquals(entity, group.get(3));
+		assertSame(group, gm.getEntities(GROUPIE));
+	}
+
+	@Test
+	public void groups_of_entity_are_updated_in_place() {
+		int entity = world.create();
+		gm.add(entity, GROUPIE);
+
+		ImmutableBag<String> groups = gm.getGroups(entity);
+		gm.add(entity, GROUPIE2);
+		assertEquals(2, groups.size());
+		assertSame(groups, gm.getGroups(entity));
+
+		gm.remove(entity, GROUPIE);
+		assertEquals(1, groups.size());
+		assertEquals(GROUPIE2, groups.get(0));
+	}
+
+	@Test
+	public void groups_survive_trimming() {
+		int kept = world.create();
+		gm.add(kept, GROUPIE);
+		for (int i = 0; 1000 > i; i++)
+			gm.add(world.create(), GROUPIE);
+		world.process();
+
+		IntBag deleted = new IntBag();
+		deleted.addAll((IntBag) gm.getEntities(GROUPIE));
+		deleted.removeValue(kept);
+		for (int i = 0; deleted.size() > i; i++)
+			world.delete(deleted.get(i));
+		world.process();
+
+		assertTrue(world.trim());
+		assertEquals(1, gm.getEntities(GROUPIE).size());
+		assertTrue(gm.isInGroup(kept, GROUPIE));
+
+		int entity = world.create();
+		gm.add(entity, GROUPIE2);
+		assertTrue(gm.isInGroup(entity, GROUPIE2));
+		assertFalse(gm.isInGroup(entity, GROUPIE));
+	}
 }
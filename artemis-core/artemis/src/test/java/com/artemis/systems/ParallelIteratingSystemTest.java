@@ -0,0 +1,292 @@
+package com.artemis.systems;
+
+import com.artemis.*;
+import com.artemis.annotations.All;
+import com.artemis.annotations.ArrayStorage;
+import com.artemis.annotations.DelayedComponentRemoval;
+import com.artemis.annotations.Read;
+import com.artemis.annotations.Write;
+import com.artemis.utils.IntBag;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static com.artemis.Aspect.all;
+import static org.junit.Assert.*;
+
+public class ParallelIteratingSystemTest {
+
+	@Test
+	public void chunk_size_is_whole_cache_lines() {
+		ParallelIntegrator system = new ParallelIntegrator();
+		system.setChunkSize(20);
+		assertEquals(2 * ParallelIteratingSystem.CACHE_LINE_IDS, system.getChunkSize());
+		system.setChunkSize(1);
+		assertEquals(ParallelIteratingSystem.CACHE_LINE_IDS, system.getChunkSize());
+	}
+
+	@Test
+	public void results_match_iterating_system() {
+		World sequential = new World(new WorldConfigurationBuilder()
+			.with(new Integrator())
+			.build());
+
+		ParallelIntegrator system = new ParallelIntegrator(new ForkJoinPool(4));
+		system.setChunkSize(16);
+		World parallel = new World(new WorldConfigurationBuilder()
+			.with(system)
+			.build());
+
+		populate(sequential);
+		populate(parallel);
+		for (int frame = 0; 20 > frame; frame++) {
+			sequential.process();
+			parallel.process();
+			assertSameState(sequential, parallel);
+		}
+	}
+
+	@Test
+	public void results_match_under_parallel_invocation_strategy() {
+		World sequential = new World(new WorldConfigurationBuilder()
+			.with(new Integrator(), new Ager())
+			.build());
+
+		ParallelIntegrator system = new ParallelIntegrator(new ForkJoinPool(4));
+		system.setChunkSize(16);
+		World parallel = new World(new WorldConfigurationBuilder()
+			.with(system, new Ager())
+			.register(new ParallelInvocationStrategy(new ForkJoinPool(2)))
+			.build());
+
+		populate(sequential);
+		populate(parallel);
+		for (int frame = 0; 20 > frame; frame++) {
+			sequential.process();
+			parallel.process();
+			assertSameState(sequential, parallel);
+		}
+	}
+
+	@Test
+	public void component_changes_match_iterating_system() {
+		World sequential = new World(new WorldConfigurationBuilder()
+			.with(new Tagger())
+			.build());
+
+		ParallelTagger system = new ParallelTagger(new ForkJoinPool(4));
+		system.setChunkSize(16);
+		World parallel = new World(new WorldConfigurationBuilder()
+			.with(system)
+			.build());
+
+		populate(sequential);
+		populate(parallel);
+		for (int frame = 0; 20 > frame; frame++) {
+			sequential.process();
+			parallel.process();
+
+			ComponentMapper<Tag> eTag = sequential.getMapper(Tag.class);
+			ComponentMapper<Tag> aTag = parallel.getMapper(Tag.class);
+			for (int id = 0, s = sequential.getEntityManager().getNextID(); s > id; id++) {
+				assertEquals(eTag.has(id), aTag.has(id));
+				if (eTag.has(id))
+					assertEquals(eTag.get(id).frame, aTag.get(id).frame);
+			}
+
+			IntBag e = sequential.getAspectSubscriptionManager().get(all(Tag.class)).getEntities();
+			IntBag a = parallel.getAspectSubscriptionManager().get(all(Tag.class)).getEntities();
+			assertEquals(e, a);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void creating_entities_while_processing_fails() {
+		Spawner spawner = new Spawner();
+		spawner.setChunkSize(16);
+		World world = new World(new WorldConfigurationBuilder()
+			.with(spawner)
+			.build());
+
+		populate(world);
+		world.process();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void flyweight_access_while_processing_fails() {
+		BodyReader reader = new BodyReader();
+		reader.setChunkSize(16);
+		World world = new World(new WorldConfigurationBuilder()
+			.with(reader)
+			.build());
+
+		populate(world);
+		world.process();
+	}
+
+	private static void populate(World world) {
+		ComponentMapper<Position> mPosition = world.getMapper(Position.class);
+		ComponentMapper<Age> mAge = world.getMapper(Age.class);
+		for (int i = 0; 1000 > i; i++) {
+			int id = world.create();
+			Position position = mPosition.create(id);
+			position.x = i % 13;
+			position.velocity = 1 + i % 5;
+			mAge.create(id);
+		}
+	}
+
+	private static void assertSameState(World expected, World actual) {
+		EntityManager em = expected.getEntityManager();
+		ComponentMapper<Position> ePosition = expected.getMapper(Position.class);
+		ComponentMapper<Position> aPosition = actual.getMapper(Position.class);
+		ComponentMapper<Marked> eMarked = expected.getMapper(Marked.class);
+		ComponentMapper<Marked> aMarked = actual.getMapper(Marked.class);
+
+		for (int id = 0, s = em.getNextID(); s > id; id++) {
+			assertEquals(em.isActive(id), actual.getEntityManager().isActive(id));
+			if (!em.isActive(id))
+				continue;
+
+			assertEquals(ePosition.get(id).x, aPosition.get(id).x);
+			assertEquals(eMarked.has(id), aMarked.has(id));
+		}
+
+		for (Aspect.Builder aspect : new Aspect.Builder[] {all(), all(Marked.class)}) {
+			IntBag e = expected.getAspectSubscriptionManager().get(aspect).getEntities();
+			IntBag a = actual.getAspectSubscriptionManager().get(aspect).getEntities();
+			assertEquals(e, a);
+		}
+	}
+
+	public static class Position extends Component {
+		public int x;
+		public int velocity;
+	}
+
+	public static class Marked extends Component {}
+
+	public static class Age extends Component {
+		public int frames;
+	}
+
+	@DelayedComponentRemoval
+	public static class Tag extends PooledComponent {
+		public int frame;
+
+		@Override
+		protected void reset() {
+			frame = 0;
+		}
+	}
+
+	@All(Position.class)
+	public static class Integrator extends IteratingSystem {
+		@Write ComponentMapper<Position> mPosition;
+		@Write ComponentMapper<Marked> mMarked;
+
+		@Override
+		protected void process(int entityId) {
+			Position position = mPosition.get(entityId);
+			position.x += position.velocity;
+			mMarked.set(entityId, position.x % 3 == 0);
+			if (position.x > 60 && position.velocity == 4)
+				world.delete(entityId);
+		}
+	}
+
+	@All(Position.class)
+	public static class ParallelIntegrator extends ParallelIteratingSystem {
+		@Write ComponentMapper<Position> mPosition;
+		@Write ComponentMapper<Marked> mMarked;
+
+		public ParallelIntegrator() {}
+
+		public ParallelIntegrator(ForkJoinPool pool) {
+			super(pool);
+		}
+
+		@Override
+		protected void process(int entityId) {
+			Position position = mPosition.get(entityId);
+			position.x += position.velocity;
+			mMarked.set(entityId, position.x % 3 == 0);
+			if (position.x > 60 && position.velocity == 4)
+				world.delete(entityId);
+		}
+	}
+
+	@All(Age.class)
+	public static class Ager extends IteratingSystem {
+		@Write ComponentMapper<Age> mAge;
+
+		@Override
+		protected void process(int entityId) {
+			mAge.get(entityId).frames++;
+		}
+	}
+
+	@All(Age.class)
+	public static class Tagger extends IteratingSystem {
+		@Write ComponentMapper<Age> mAge;
+		@Write ComponentMapper<Tag> mTag;
+
+		@Override
+		protected void process(int entityId) {
+			tag(mAge, mTag, entityId);
+		}
+	}
+
+	@All(Age.class)
+	public static class ParallelTagger extends ParallelIteratingSystem {
+		@Write ComponentMapper<Age> mAge;
+		@Write ComponentMapper<Tag> mTag;
+
+		public ParallelTagger(ForkJoinPool pool) {
+			super(pool);
+		}
+
+		@Override
+		protected void process(int entityId) {
+			tag(mAge, mTag, entityId);
+		}
+	}
+
+	private static void tag(ComponentMapper<Age> mAge, ComponentMapper<Tag> mTag, int entityId) {
+		int frame = ++mAge.get(entityId).frames;
+		if ((entityId + frame) % 3 == 0) {
+			mTag.remove(entityId);
+		} else if (!mTag.has(entityId)) {
+			mTag.create(entityId).frame = frame;
+		} else if ((entityId & 1) == 0) {
+			// removed and created again
+			mTag.remove(entityId);
+			mTag.create(entityId).frame = frame;
+		}
+	}
+
+	@ArrayStorage
+	public static class Body extends Component {
+		public float x;
+	}
+
+	@All(Position.class)
+	public static class BodyReader extends ParallelIteratingSystem {
+		@Read ComponentMapper<Body> mBody;
+
+		@Override
+		protected void process(int entityId) {
+			mBody.get(entityId);
+		}
+	}
+
+	@All(Position.class)
+	public static class Spawner extends ParallelIteratingSystem {
+		@Read ComponentMapper<Position> mPosition;
+
+		@Override
+		protected void process(int entityId) {
+			world.create();
+		}
+	}
+}
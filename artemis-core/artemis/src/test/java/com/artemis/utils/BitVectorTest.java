@@ -0,0 +1,104 @@
+package com.artemis.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BitVectorTest {
+
+	@Test
+	public void set_range() {
+		int[][] ranges = {{0, 0}, {0, 1}, {3, 64}, {63, 65}, {64, 128}, {5, 300}, {130, 131}};
+		for (int[] range : ranges) {
+			BitVector bv = new BitVector();
+			bv.set(range[0], range[1]);
+
+			assertEquals(range[1] - range[0], bv.cardinality());
+			for (int i = 0; 320 > i; i++)
+				assertEquals(i >= range[0] && i < range[1], bv.get(i));
+		}
+	}
+
+	@Test
+	public void or_and_not_with_differently_sized_vectors() {
+		BitVector small = new BitVector();
+		small.set(1);
+
+		BitVector large = new BitVector(1024);
+		large.set(1000);
+		large.set(1);
+
+		small.or(large);
+		assertTrue(small.get(1000));
+		assertEquals(2, small.cardinality());
+
+		BitVector other = new BitVector();
+		other.set(1);
+		large.andNot(other);
+		assertFalse(large.get(1));
+		assertTrue(large.get(1000));
+	}
+
+	@Test
+	public void to_int_bag_grows_destination() {
+		BitVector bv = new BitVector();
+		bv.set(3, 200);
+		bv.set(5000);
+
+		IntBag out = bv.toIntBag(new IntBag(1));
+		assertEquals(198, out.size());
+		for (int i = 0; 197 > i; i++) {
+			assertEquals(i + 3, out.get(i));
+		}
+		assertEquals(5000, out.get(197));
+
+		bv.clear();
+		bv.set(7);
+		assertEquals(1, bv.toIntBag(out).size());
+		assertEquals(7, out.get(0));
+
+		bv.clear();
+		assertEquals(0, bv.toIntBag(out).size());
+	}
+
+	@Test
+	public void and_xor_with_differently_sized_vectors() {
+		BitVector large = new BitVector(1024);
+		large.set(1000);
+		large.set(1);
+
+		BitVector small = new BitVector();
+		small.set(1);
+		small.set(2);
+
+		BitVector xored = new BitVector(small);
+		xored.xor(large);
+		assertTrue(xored.get(1000));
+		assertTrue(xored.get(2));
+		assertFalse(xored.get(1));
+
+		large.and(small);
+		assertFalse(large.get(1000));
+		assertTrue(large.get(1));
+		assertEquals(1, large.cardinality());
+	}
+
+	@Test
+	public void intersects_and_contains_all_check_every_word() {
+		for (int words = 1; 11 > words; words++) {
+			for (int word = 0; words > word; word++) {
+				BitVector all = new BitVector(words * 64);
+				all.set(0, words * 64);
+
+				BitVector one = new BitVector(words * 64);
+				one.set(word * 64 + 5);
+				assertTrue(all.intersects(one));
+				assertTrue(all.containsAll(one));
+
+				all.clear(word * 64 + 5);
+				assertFalse(all.intersects(one));
+				assertFalse(all.containsAll(one));
+			}
+		}
+	}
+}
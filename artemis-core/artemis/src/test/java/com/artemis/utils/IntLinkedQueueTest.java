@@ -0,0 +1,66 @@
+package com.artemis.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IntLinkedQueueTest {
+
+	@Test
+	public void values_are_popped_in_insertion_order() {
+		IntLinkedQueue queue = new IntLinkedQueue(4);
+		queue.add(7);
+		queue.add(2);
+		queue.add(130);
+		queue.add(0);
+
+		assertEquals(4, queue.size());
+		assertEquals(7, queue.popFirst());
+		assertEquals(2, queue.popFirst());
+		assertEquals(130, queue.popFirst());
+		assertEquals(0, queue.popFirst());
+		assertTrue(queue.isEmpty());
+		assertEquals(-1, queue.peekFirst());
+	}
+
+	@Test
+	public void removing_arbitrary_values_keeps_order() {
+		IntLinkedQueue queue = new IntLinkedQueue();
+		for (int i = 0; 10 > i; i++)
+			queue.add(i);
+
+		assertTrue(queue.remove(0));
+		assertTrue(queue.remove(5));
+		assertTrue(queue.remove(9));
+		assertFalse(queue.remove(5));
+		assertFalse(queue.remove(1000));
+
+		assertEquals("IntLinkedQueue(1, 2, 3, 4, 6, 7, 8)", queue.toString());
+		assertFalse(queue.contains(5));
+		assertTrue(queue.contains(6));
+
+		queue.add(5);
+		assertEquals("IntLinkedQueue(1, 2, 3, 4, 6, 7, 8, 5)", queue.toString());
+	}
+
+	@Test
+	public void duplicates_are_rejected() {
+		IntLinkedQueue queue = new IntLinkedQueue();
+		assertTrue(queue.add(3));
+		assertFalse(queue.add(3));
+		assertEquals(1, queue.size());
+	}
+
+	@Test
+	public void clear_empties_queue() {
+		IntLinkedQueue queue = new IntLinkedQueue();
+		queue.add(1);
+		queue.add(2);
+		queue.clear();
+
+		assertTrue(queue.isEmpty());
+		assertFalse(queue.contains(1));
+		assertTrue(queue.add(2));
+		assertEquals(2, queue.popFirst());
+	}
+}
@@ -0,0 +1,93 @@
+package com.artemis.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SummaryBitVectorTest {
+
+	@Test
+	public void matches_bit_vector() {
+		Random random = new Random(1234);
+		BitVector expected = new BitVector();
+		SummaryBitVector actual = new SummaryBitVector();
+
+		for (int round = 0; 200 > round; round++) {
+			int capacity = 64 * 64 * (1 + random.nextInt(4));
+			expected.ensureCapacity(capacity);
+			actual.ensureCapacity(capacity);
+
+			for (int i = 0, s = random.nextInt(50); s > i; i++) {
+				int id = random.nextInt(capacity);
+				switch (random.nextInt(4)) {
+					case 0: expected.set(id); actual.set(id); break;
+					case 1: expected.unsafeClear(id); actual.unsafeClear(id); break;
+					case 2: expected.flip(id); actual.flip(id); break;
+					default:
+						int to = Math.min(capacity, id + random.nextInt(200));
+						expected.set(id, to);
+						actual.set(id, to);
+				}
+			}
+
+			if (random.nextInt(10) == 0) {
+				BitVector mask = new BitVector();
+				mask.set(random.nextInt(capacity), capacity);
+				expected.andNot(mask);
+				actual.andNot(mask);
+			}
+
+			assertSame(expected, actual);
+
+			if (random.nextInt(5) == 0) {
+				expected.clear();
+				actual.clear();
+				assertTrue(actual.isEmpty());
+			}
+		}
+	}
+
+	@Test
+	public void word_writes_update_summary() {
+		SummaryBitVector bv = new SummaryBitVector(64 * 64 * 2);
+		bv.unsafeSetWord(100, 0b101L);
+		assertFalse(bv.isEmpty());
+		assertEquals(100 * 64, bv.nextSetBit(0));
+		assertEquals(100 * 64 + 3, bv.length());
+
+		bv.unsafeSetWord(100, 0L);
+		assertTrue(bv.isEmpty());
+		assertEquals(-1, bv.nextSetBit(0));
+	}
+
+	@Test
+	public void trim_keeps_lower_bits() {
+		SummaryBitVector bv = new SummaryBitVector();
+		bv.set(10);
+		bv.set(100000);
+		bv.trim(1000);
+
+		assertEquals(1, bv.cardinality());
+		assertEquals(-1, bv.nextSetBit(11));
+		bv.unsafeClear(10);
+		assertTrue(bv.isEmpty());
+	}
+
+	private static void assertSame(BitVector expected, SummaryBitVector actual) {
+		assertEquals(expected.isEmpty(), actual.isEmpty());
+		assertEquals(expected.cardinality(), actual.cardinality());
+		assertEquals(expected.length(), actual.length());
+		assertEquals(expected.toIntBag(new IntBag()), actual.toIntBag(new IntBag()));
+
+		for (int a = expected.nextSetBit(0), b = actual.nextSetBit(0); ; ) {
+			assertEquals(a, b);
+			if (a == -1)
+				break;
+
+			a = expected.nextSetBit(a + 1);
+			b = actual.nextSetBit(b + 1);
+		}
+	}
+}